@@ -14,5 +14,59 @@
 // specific language governing permissions and limitations
 // under the License.
 
+# Configuration of an AWS Lambda function.
+#
+# + batchItemConcurrency - Enables the record level handler mode for functions with an `SQSRecord` or a
+#                          `DynamoDBRecord` event. The function is called for each record of the batch by up to
+#                          this number of concurrent strands, and the records which failed are reported in the
+#                          `batchItemFailures` response, so only those are retried. SQS records with the same message
+#                          group ID, and DynamoDB records of the same item, which have the same `Keys`, are
+#                          processed in order.
+# + metrics - Records the latency of the invocation stages in histograms, which are logged in the CloudWatch
+#             Embedded Metric Format every `BALLERINA_AWSLAMBDA_METRICS_BATCH_SIZE` invocations or
+#             `BALLERINA_AWSLAMBDA_METRICS_INTERVAL_MS` milliseconds, whichever comes first.
+# + jvmProfile - The JVM launch profile used by the Ballerina layer, instead of the one selected by the memory size
+#                of the function. The `BALLERINA_AWSLAMBDA_JVM_PROFILE` environment variable of the function
+#                overrides it.
+# + primingEvent - A synthetic event, as a JSON string, which the function is invoked with before the function
+#                  instance is checkpointed for SnapStart, so its hot paths are compiled in the snapshot. The
+#                  priming invocations are real calls of the function, so it should not cause side effects.
+# + cacheTtlSeconds - Caches the results of an idempotent function for this number of seconds. Events which are
+#                     identical, in the declared fields for a closed record event type and as a whole otherwise,
+#                     are served from the cache of the warm function instance, without converting the event or
+#                     calling the function. The cache is bounded to `BALLERINA_AWSLAMBDA_RESULT_CACHE_PERCENT`
+#                     percent of the function memory, 10 by default, and evicts the least recently used results.
+#                     Errors are not cached.
+public type FunctionConfiguration record {|
+    int batchItemConcurrency?;
+    boolean metrics?;
+    JvmProfile jvmProfile?;
+    string primingEvent?;
+    int cacheTtlSeconds?;
+|};
+
+# JVM launch profiles of the Ballerina layer. `auto` selects `small` below 1024 MB, `medium` below 3538 MB and
+# `large` otherwise. `small` uses the serial collector and only the C1 compiler, `medium` uses the serial collector
+# and `large` uses the parallel collector. `none` starts the JVM with its default options.
+public type JvmProfile "auto"|"small"|"medium"|"large"|"none";
+
 # @awslambda:Function annotation
-public const annotation Function on function;
+public const annotation FunctionConfiguration Function on function;
+
+# @awslambda:Init annotation, marks a `function () returns error?` which is called once in the init phase,
+# before the first event is polled. Use it for expensive setup such as creating clients, parsing the
+# configuration and warming up caches. If it fails, the error is reported as an init error and the function
+# instance is not used.
+public annotation Init on function;
+
+# @awslambda:BeforeCheckpoint annotation, marks a `function () returns error?` which is called before a function
+# instance initialised for SnapStart is checkpointed, after the handler has been primed. Use it to close
+# connections and drop state which must not be captured in the snapshot. If it fails, the error is reported as
+# an init error.
+public annotation BeforeCheckpoint on function;
+
+# @awslambda:AfterRestore annotation, marks a `function () returns error?` which is called when a function
+# instance is restored from a SnapStart snapshot, before the first event is polled. Use it to recreate clients
+# and refresh state such as credentials and random seeds. If it fails, the error is reported as a restore error
+# and the function instance is not used.
+public annotation AfterRestore on function;
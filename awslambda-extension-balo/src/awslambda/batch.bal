@@ -0,0 +1,162 @@
+// Copyright (c) 2020 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+//
+// WSO2 Inc. licenses this file to you under the Apache License,
+// Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+import ballerina/io;
+
+// a record of a batch event, with the identifier reported in batchItemFailures when it fails
+type BatchItem [string, anydata];
+
+# Returns the batch handler of a record level SQS function, which calls the function for each record of the
+# batch. Records with the same message group ID are processed in order, and a failed record also fails the
+# records after it in its group, which keeps the order of FIFO queues on retry.
+#
+# + func - the record level handler
+# + concurrency - the maximum number of concurrently processed records
+# + return - the batch handler
+public function __sqsBatchHandler(FunctionType func, int concurrency) returns FunctionType {
+    return function (Context ctx, anydata event) returns anydata|error {
+        SQSEvent sqsEvent = <SQSEvent> event;
+        BatchItem[][] groups = [];
+        map<BatchItem[]> groupsByKey = {};
+        foreach SQSRecord rec in sqsEvent.Records {
+            addBatchItem(groups, groupsByKey, rec.attributes["MessageGroupId"], [rec.messageId, rec]);
+        }
+        return processBatch(ctx, func, groups, concurrency);
+    };
+}
+
+# Returns the batch handler of a record level DynamoDB function, which calls the function for each record of
+# the batch. Records of the same item, which have the same `Keys`, are processed in order, and a failed record
+# also fails the records after it for the same item. This is the order DynamoDB Streams guarantee, and records
+# of items with the same partition key but different sort keys may be processed concurrently.
+#
+# + func - the record level handler
+# + concurrency - the maximum number of concurrently processed records
+# + return - the batch handler
+public function __dynamoDBBatchHandler(FunctionType func, int concurrency) returns FunctionType {
+    return function (Context ctx, anydata event) returns anydata|error {
+        DynamoDBEvent dynamoDBEvent = <DynamoDBEvent> event;
+        BatchItem[][] groups = [];
+        map<BatchItem[]> groupsByKey = {};
+        foreach DynamoDBRecord rec in dynamoDBEvent.Records {
+            // a stream record does not tell which of the keys is the partition key, so the item is the group
+            addBatchItem(groups, groupsByKey, rec.dynamodb.Keys.toString(), [rec.dynamodb.SequenceNumber, rec]);
+        }
+        return processBatch(ctx, func, groups, concurrency);
+    };
+}
+
+function addBatchItem(BatchItem[][] groups, map<BatchItem[]> groupsByKey, string? key, BatchItem item) {
+    if (key is string) {
+        BatchItem[]? group = groupsByKey[key];
+        if (group is BatchItem[]) {
+            group.push(item);
+            return;
+        }
+        BatchItem[] newGroup = [item];
+        groupsByKey[key] = newGroup;
+        groups.push(newGroup);
+    } else {
+        // records without an ordering key are not ordered
+        groups.push([item]);
+    }
+}
+
+function processBatch(Context ctx, FunctionType func, BatchItem[][] groups, int concurrency) returns json {
+    int workerCount = concurrency < 1 ? 1 : concurrency;
+    if (workerCount > groups.length()) {
+        workerCount = groups.length();
+    }
+    // assign each group to the least loaded worker, a group is always processed by a single worker
+    BatchItem[][][] assignments = [];
+    int[] loads = [];
+    foreach int i in 0 ..< workerCount {
+        assignments.push([]);
+        loads.push(0);
+    }
+    foreach BatchItem[] group in groups {
+        int target = 0;
+        foreach int i in 1 ..< workerCount {
+            if (loads[i] < loads[target]) {
+                target = i;
+            }
+        }
+        assignments[target].push(group);
+        loads[target] = loads[target] + group.length();
+    }
+    // each worker has its own view of the context, since the workers run in parallel and the context is not
+    // safe to modify concurrently
+    Context[] views = [];
+    foreach int i in 0 ..< workerCount {
+        views.push(newWorkerContext(ctx));
+    }
+    future<string[]>[] workers = [];
+    foreach int i in 1 ..< workerCount {
+        future<string[]> worker = @strand {thread: "any"} start processGroups(views[i], func, assignments[i]);
+        workers.push(worker);
+    }
+    // the first worker runs on the current strand
+    string[] failures = workerCount > 0 ? processGroups(views[0], func, assignments[0]) : [];
+    foreach int i in 0 ..< workers.length() {
+        future<string[]> worker = workers[i];
+        string[]|error result = wait worker;
+        if (result is string[]) {
+            failures.push(...result);
+        } else {
+            io:println("Error - processing batch: ", result);
+            foreach BatchItem[] group in assignments[i + 1] {
+                foreach BatchItem item in group {
+                    failures.push(item[0]);
+                }
+            }
+        }
+    }
+    // the tasks deferred by the records run after the batch response has been sent, in worker order
+    foreach Context view in views {
+        ctx.deferredTasks.push(...view.deferredTasks);
+    }
+    json[] batchItemFailures = [];
+    foreach string itemIdentifier in failures {
+        batchItemFailures.push({ itemIdentifier: itemIdentifier });
+    }
+    return { batchItemFailures: batchItemFailures };
+}
+
+function newWorkerContext(Context ctx) returns Context {
+    Context view = new(ctx.requestId, ctx.deadlineMs, ctx.invokedFunctionArn, ctx.traceId);
+    view.parent = ctx;
+    return view;
+}
+
+function processGroups(Context ctx, FunctionType func, BatchItem[][] groups) returns string[] {
+    string[] failures = [];
+    foreach BatchItem[] group in groups {
+        boolean failed = false;
+        foreach BatchItem item in group {
+            if (!failed) {
+                anydata|error result = trap func(ctx, item[1]);
+                if (result is error) {
+                    io:println("Error - processing batch item ", item[0], ": ", result);
+                    failed = true;
+                }
+            }
+            if (failed) {
+                failures.push(item[0]);
+            }
+        }
+    }
+    return failures;
+}
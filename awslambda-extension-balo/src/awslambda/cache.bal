@@ -0,0 +1,157 @@
+// Copyright (c) 2020 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+//
+// WSO2 Inc. licenses this file to you under the Apache License,
+// Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+import ballerina/crypto;
+import ballerina/http;
+import ballerina/time;
+
+const RESULT_CACHE_PERCENT_ENV = "BALLERINA_AWSLAMBDA_RESULT_CACHE_PERCENT";
+const MEMORY_SIZE_ENV = "AWS_LAMBDA_FUNCTION_MEMORY_SIZE";
+const DEFAULT_RESULT_CACHE_PERCENT = 10;
+const DEFAULT_MEMORY_SIZE_MB = 128;
+// estimated size of the key, the entry record and the map node of a cached result, in bytes
+const RESULT_CACHE_ENTRY_OVERHEAD = 256;
+
+# Counters of the result cache of the selected handler since the function instance started.
+#
+# + hits - the invocations which were served from the cache
+# + misses - the invocations which called the handler
+# + entries - the number of cached results
+# + sizeBytes - the estimated size of the cached results
+# + capacityBytes - the size the cache is bounded to
+public type ResultCacheStatistics record {|
+    int hits;
+    int misses;
+    int entries;
+    int sizeBytes;
+    int capacityBytes;
+|};
+
+type CachedResult record {|
+    string key;
+    anydata result;
+    int expiresAtMs;
+    int sizeBytes;
+|};
+
+// the cache is bounded to a share of the function memory, so it grows with the memory size of the function
+final int resultCacheCapacity = getIntEnv(MEMORY_SIZE_ENV, DEFAULT_MEMORY_SIZE_MB) * 1024 * 1024 / 100 *
+                                getIntEnv(RESULT_CACHE_PERCENT_ENV, DEFAULT_RESULT_CACHE_PERCENT);
+
+boolean resultCacheEnabled = false;
+int resultCacheTtlMs = 0;
+json resultCacheProjection = ();
+// the entries are kept in the order they were last used, so the first entry is the least recently used one
+map<CachedResult> resultCache = {};
+int resultCacheSize = 0;
+int resultCacheHits = 0;
+int resultCacheMisses = 0;
+
+# Enables the result cache of the selected handler.
+#
+# + ttlSeconds - the time a result is served from the cache
+# + fields - the declared fields of a closed record event type as a JSON object, as given to the record event
+#            parser, or an empty string to key on the whole event
+public function __enableResultCache(int ttlSeconds, string fields) {
+    resultCacheEnabled = true;
+    resultCacheTtlMs = ttlSeconds * 1000;
+    json|error projection = fields == "" ? () : fields.fromJsonString();
+    resultCacheProjection = projection is json ? projection : ();
+}
+
+# Returns the counters of the result cache of the selected handler.
+#
+# + return - the result cache counters
+public function getResultCacheStatistics() returns ResultCacheStatistics {
+    return {
+        hits: resultCacheHits,
+        misses: resultCacheMisses,
+        entries: resultCache.length(),
+        sizeBytes: resultCacheSize,
+        capacityBytes: resultCacheCapacity
+    };
+}
+
+# Returns the cache key of an event, which is the hash of the event after the fields which a closed record event
+# type does not declare are dropped, so fields such as request ids and timestamps do not make identical events
+# distinct.
+#
+# + resp - the next event response of the Runtime API
+# + return - the cache key, or nil if the event is not JSON
+function getResultCacheKey(http:Response resp) returns string? {
+    json|error content = resp.getJsonPayload();
+    if (content is error) {
+        return ();
+    }
+    json projection = resultCacheProjection;
+    if (projection is map<json>) {
+        pruneFields(content, projection);
+    }
+    return crypto:hashSha256(content.toJsonString().toBytes()).toBase16();
+}
+
+# Returns the cached result of an event and marks it as the most recently used one, or nil if there is no
+# result or it has expired.
+#
+# + key - the cache key of the event
+# + return - the cached result
+function lookupResult(string key) returns CachedResult? {
+    CachedResult? entry = resultCache[key];
+    if (entry is CachedResult) {
+        removeResult(key);
+        if (entry.expiresAtMs > time:currentTime().time) {
+            resultCache[key] = entry;
+            resultCacheSize += entry.sizeBytes;
+            resultCacheHits += 1;
+            return entry;
+        }
+    }
+    resultCacheMisses += 1;
+    return ();
+}
+
+# Caches the result of an event, evicting the least recently used results until it fits in the capacity.
+#
+# + key - the cache key of the event
+# + result - the JSON result of the handler
+function storeResult(string key, anydata result) {
+    int sizeBytes = (<json> result).toJsonString().length() + RESULT_CACHE_ENTRY_OVERHEAD;
+    if (sizeBytes > resultCacheCapacity) {
+        return;
+    }
+    while (resultCacheSize + sizeBytes > resultCacheCapacity) {
+        var eldest = resultCache.iterator().next();
+        if (eldest is ()) {
+            break;
+        }
+        removeResult(eldest.value.key);
+    }
+    resultCache[key] = {
+        key: key,
+        // the handler may still hold and modify the value it returned
+        result: result.cloneReadOnly(),
+        expiresAtMs: time:currentTime().time + resultCacheTtlMs,
+        sizeBytes: sizeBytes
+    };
+    resultCacheSize += sizeBytes;
+}
+
+function removeResult(string key) {
+    if (resultCache.hasKey(key)) {
+        CachedResult entry = resultCache.remove(key);
+        resultCacheSize -= entry.sizeBytes;
+    }
+}
@@ -0,0 +1,147 @@
+// Copyright (c) 2020 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+//
+// WSO2 Inc. licenses this file to you under the Apache License,
+// Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+import ballerina/http;
+import ballerina/io;
+import ballerina/system;
+import ballerina/time;
+
+const RESTORE_NEXT_URL = "/2018-06-01/runtime/restore/next";
+const RESTORE_ERROR_URL = "/2018-06-01/runtime/restore/error";
+const INITIALIZATION_TYPE_ENV = "AWS_LAMBDA_INITIALIZATION_TYPE";
+const SNAP_START = "snap-start";
+const PRIMING_INVOCATIONS_ENV = "BALLERINA_AWSLAMBDA_PRIMING_INVOCATIONS";
+// enough calls for the hot methods of the handler to pass the C1 compile threshold of tiered compilation
+const DEFAULT_PRIMING_INVOCATIONS = 250;
+const PRIMING_REQUEST_ID = "priming";
+const PRIMING_DEADLINE_MS = 60000;
+const BEFORE_CHECKPOINT_ERROR_TYPE = "Runtime.BeforeCheckpointError";
+const AFTER_RESTORE_ERROR_TYPE = "Runtime.AfterRestoreError";
+
+type LifecycleHook record {|
+    string name;
+    InitFunction hook;
+|};
+
+LifecycleHook[] beforeCheckpointHooks = [];
+LifecycleHook[] afterRestoreHooks = [];
+
+// the synthetic event of the selected handler, which is primed before the checkpoint if it is set
+string? primingEvent = ();
+
+# Registers an `@awslambda:BeforeCheckpoint` function, which is called after priming and before the function
+# instance is checkpointed.
+#
+# + name - the name of the hook function
+# + hook - the hook function
+public function __registerBeforeCheckpoint(string name, InitFunction hook) {
+    beforeCheckpointHooks.push({ name: name, hook: hook });
+}
+
+# Registers an `@awslambda:AfterRestore` function, which is called after the function instance is restored
+# and before the first event is polled.
+#
+# + name - the name of the hook function
+# + hook - the hook function
+public function __registerAfterRestore(string name, InitFunction hook) {
+    afterRestoreHooks.push({ name: name, hook: hook });
+}
+
+# Sets the synthetic event the selected handler is primed with before the checkpoint.
+#
+# + event - the event payload
+public function __setPrimingEvent(string event) {
+    primingEvent = event;
+}
+
+function isSnapStart() returns boolean {
+    return system:getEnv(INITIALIZATION_TYPE_ENV) == SNAP_START;
+}
+
+# Runs the checkpoint and restore lifecycle of a function instance initialised for a snapshot. The handler is
+# primed and the before checkpoint hooks are called, then the runtime waits for the restore, after which the
+# runtime API clients are recreated and the after restore hooks are called.
+#
+# + clientEP - the runtime API client created in the init phase
+# + nextEP - the runtime API client for long polls created in the init phase
+# + func - the proxy of the selected handler
+# + eventParser - the event parser of the selected handler
+# + responseWriter - the response writer of the selected handler
+# + return - the runtime API clients to post with and to poll for events with, or `()` if a hook failed
+function checkpointAndRestore(http:Client clientEP, http:Client nextEP, FunctionType func, EventParser eventParser,
+                              ResponseWriter responseWriter) returns [http:Client, http:Client]? {
+    primeHandler(func, eventParser, responseWriter);
+    error? failure = runHooks(beforeCheckpointHooks, "Before checkpoint");
+    if (failure is error) {
+        reportLifecycleError(clientEP, INIT_ERROR_URL, BEFORE_CHECKPOINT_ERROR_TYPE, failure);
+        return ();
+    }
+    // the snapshot is taken while this request is pending, and it returns once the instance is restored
+    var restored = nextEP->get(RESTORE_NEXT_URL);
+    if (restored is error) {
+        io:println("Error - network failure waiting for restore: ", restored);
+    }
+    // connections opened before the checkpoint are not valid in the restored instance
+    http:Client restoredEP = newRuntimeClient();
+    invalidateResources();
+    failure = runHooks(afterRestoreHooks, "After restore");
+    if (failure is error) {
+        reportLifecycleError(restoredEP, RESTORE_ERROR_URL, AFTER_RESTORE_ERROR_TYPE, failure);
+        return ();
+    }
+    return [restoredEP, newNextClient()];
+}
+
+function runHooks(LifecycleHook[] hooks, string kind) returns error? {
+    foreach LifecycleHook hook in hooks {
+        var result = trap hook.hook();
+        if (result is error) {
+            return error(kind + " function " + hook.name + " failed", result);
+        }
+    }
+}
+
+# Invokes the selected handler with its priming event, so its hot paths are compiled before the checkpoint.
+# The results are serialised and discarded, and the deferred tasks of the priming invocations are not run.
+function primeHandler(FunctionType func, EventParser eventParser, ResponseWriter responseWriter) {
+    string? event = primingEvent;
+    if (event is ()) {
+        return;
+    }
+    int invocations = getIntEnv(PRIMING_INVOCATIONS_ENV, DEFAULT_PRIMING_INVOCATIONS);
+    foreach int i in 0 ..< invocations {
+        http:Response resp = new;
+        resp.setTextPayload(event, contentType = "application/json");
+        var parsed = eventParser(resp);
+        if (parsed is error) {
+            io:println("Error - invalid priming event: ", parsed);
+            return;
+        }
+        Context ctx = new(PRIMING_REQUEST_ID, time:currentTime().time + PRIMING_DEADLINE_MS, "", "");
+        var result = trap func(ctx, parsed);
+        if (result is error) {
+            io:println("Error - priming invocation failed: ", result);
+            return;
+        }
+        http:Request req = new;
+        error? written = responseWriter(req, <@untainted> result, <@untainted> parsed);
+        if (written is error) {
+            io:println("Error - invalid priming response: ", written);
+            return;
+        }
+    }
+}
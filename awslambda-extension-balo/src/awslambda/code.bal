@@ -19,7 +19,6 @@ import ballerina/io;
 import ballerina/runtime;
 import ballerina/system;
 import ballerina/time;
-import ballerina/stringutils;
 
 # Object to represent an AWS Lambda function execution context.
 public class Context {
@@ -28,6 +27,13 @@ public class Context {
     int deadlineMs;
     string invokedFunctionArn;
     string traceId;
+    // set when a streaming handler is invoked
+    ResponseStream? responseStream = ();
+    // set by the deadline watchdog
+    boolean cancelled = false;
+    DeferredTask[] deferredTasks = [];
+    // set for the view of a batch worker, which is cancelled along with the context of the invocation
+    Context? parent = ();
 
     isolated function init(string requestId, int deadlineMs, string invokedFunctionArn, string traceId) {
         self.requestId = requestId;
@@ -70,12 +76,73 @@ public class Context {
         return result;
     }
 
+    # Returns whether the request has been cancelled because its deadline is near. Long running handlers
+    # should check it periodically and return early, otherwise the runtime reports a timeout error on their
+    # behalf and discards their result.
+    # + return - true if the request has been cancelled
+    public isolated function isCancelled() returns boolean {
+        Context? parent = self.parent;
+        return self.cancelled || (parent is Context && parent.isCancelled());
+    }
+
+    # Adds a task which runs after the response has been sent, such as flushing logs, metrics or audit
+    # records, so its latency is not observed by the client. The deferred tasks run within a time budget
+    # before the next event is polled, and they do not affect the response when they fail. Tasks added once
+    # the request has been cancelled are dropped.
+    # + task - the task to run
+    public function addDeferredTask(DeferredTask task) {
+        if (self.isCancelled()) {
+            // a handler which outlived its deadline may add tasks while the runtime is running the deferred tasks
+            io:println("Error - deferred task of cancelled request ", self.requestId, " is dropped");
+            return;
+        }
+        self.deferredTasks.push(task);
+    }
+
+    # Returns a resource registered with `registerResource`, which is created on its first use in the function
+    # instance and reused by later invocations. The resource is created again when its health check fails. It
+    # is shared by all the strands of the handler. The resource is checked against the given type, so the cast
+    # of the result to that type cannot fail, for example in
+    # `<http:Client> check ctx.getResource("orders", http:Client)`.
+    # + name - the resource name
+    # + resourceType - the type of the values the factory creates
+    # + return - the resource, or an error if it is not registered, cannot be created or is of another type
+    public function getResource(string name, typedesc<any> resourceType) returns any|error {
+        return checkResourceType(name, check acquireResource(name), resourceType);
+    }
+
+    # Drops a resource which the handler found to be unusable, so it is created again on its next use.
+    # + name - the resource name
+    public function invalidateResource(string name) {
+        dropResource(name);
+    }
+
 }
 
-type FunctionType function (Context, anydata) returns json|error;
-type FunctionEntry [FunctionType, typedesc<anydata>];
-map<FunctionEntry> functions = { };
+type FunctionType function (Context, anydata) returns anydata|error;
+
+type InitFunction function () returns error?;
+
+# Function type of the event parsers the compiler selects for the event type of each handler.
+public type EventParser function (http:Response resp) returns anydata|error;
+
+# Function type of the response writers the compiler selects for the return type of each handler. The
+# writers receive the parsed event along with the result, so they can negotiate the response with the request.
+# A result which can not be written is reported as an error of the invocation.
+public type ResponseWriter function (http:Request req, anydata payload, anydata event) returns error?;
+
 const BASE_URL = "/2018-06-01/runtime/invocation/";
+const NEXT_URL = "/2018-06-01/runtime/invocation/next";
+const INIT_ERROR_URL = "/2018-06-01/runtime/init/error";
+const ERROR_TYPE_HEADER = "Lambda-Runtime-Function-Error-Type";
+const TRAINING_ENV = "BALLERINA_AWSLAMBDA_TRAINING";
+const RUNTIME_API_TIMEOUT_MS = 10000;
+
+// the function name part of the `{BALX_NAME}.{FUNC_NAME}` handler string, parsed once at startup
+final string selectedHandler = parseHandlerName(system:getEnv("_HANDLER"));
+
+// the failure of an init function, which is reported instead of polling for events
+error? initError = ();
 
 isolated function generateContext(http:Response resp) returns @tainted Context {
     string requestId = resp.getHeader("Lambda-Runtime-Aws-Request-Id");
@@ -91,36 +158,237 @@ isolated function generateContext(http:Response resp) returns @tainted Context {
     return ctx;
 }
 
-public function __register(string handler, FunctionType func, typedesc<anydata> eventType) {
-    functions[handler] = [func, eventType];
+isolated function parseHandlerName(string handlerStr) returns string {
+    int? index = handlerStr.indexOf(".");
+    return index is int ? handlerStr.substring(index + 1) : "";
 }
 
-isolated function jsonToEventType(json input, typedesc<anydata> eventType) returns anydata|error {
-    return input.cloneWithType(eventType);
+# Returns whether the given function is the handler selected with the `_HANDLER` environment variable.
+#
+# + handler - the name of the handler function
+# + return - true if the handler is selected
+public function __isHandler(string handler) returns boolean {
+    return selectedHandler == handler;
 }
 
-public function __process() {
-    http:Client clientEP = new("http://" + system:getEnv("AWS_LAMBDA_RUNTIME_API"));
-    string handlerStr = system:getEnv("_HANDLER");
+# Returns the event parser for handlers which accept the JSON payload as is. The payload is passed to the
+# handler without a conversion.
+#
+# + return - the event parser
+public function __jsonEventParser() returns EventParser {
+    return parseJsonEvent;
+}
 
-    string[] hsc = stringutils:split(system:getEnv("_HANDLER"), "\\.");
-    if (hsc.length() < 2) {
-        io:println("Error - invalid handler string: ", handlerStr, ", should be of format {BALX_NAME}.{FUNC_NAME}");
+# Returns the event parser for handlers with a typed event. For a closed record event type, the fields which
+# it does not declare are dropped from the payload before it is converted, since the conversion would fail on
+# them. Open records keep the undeclared fields, so they are converted from the whole payload.
+#
+# + eventType - the event type of the handler
+# + fields - the declared fields of a closed record event type as a JSON object, where the fields of closed
+#            record typed fields are nested objects, or an empty string to convert the whole payload
+# + return - the event parser
+public function __recordEventParser(typedesc<anydata> eventType, string fields) returns EventParser {
+    json|error projection = fields == "" ? () : fields.fromJsonString();
+    return function (http:Response resp) returns anydata|error {
+        json content = check resp.getJsonPayload();
+        if (projection is map<json>) {
+            pruneFields(content, projection);
+        }
+        return content.cloneWithType(eventType);
+    };
+}
+
+# Returns the event parser for handlers with a `string` event, which is the payload as is.
+#
+# + return - the event parser
+public function __textEventParser() returns EventParser {
+    return parseTextEvent;
+}
+
+# Returns the event parser for handlers with a `byte[]` event, which is the payload as is.
+#
+# + return - the event parser
+public function __binaryEventParser() returns EventParser {
+    return parseBinaryEvent;
+}
+
+# Returns the response writer for handlers which return JSON.
+#
+# + return - the response writer
+public function __jsonResponseWriter() returns ResponseWriter {
+    return writeJsonResponse;
+}
+
+# Returns the response writer for handlers which return a `string`, which is sent as is.
+#
+# + return - the response writer
+public function __textResponseWriter() returns ResponseWriter {
+    return writeTextResponse;
+}
+
+# Returns the response writer for handlers which return a `byte[]`, which is sent as is.
+#
+# + return - the response writer
+public function __binaryResponseWriter() returns ResponseWriter {
+    return writeBinaryResponse;
+}
+
+function parseJsonEvent(http:Response resp) returns anydata|error {
+    return resp.getJsonPayload();
+}
+
+function parseTextEvent(http:Response resp) returns anydata|error {
+    return resp.getTextPayload();
+}
+
+function parseBinaryEvent(http:Response resp) returns anydata|error {
+    return resp.getBinaryPayload();
+}
+
+function writeJsonResponse(http:Request req, anydata payload, anydata event) returns error? {
+    req.setJsonPayload(<json> payload);
+}
+
+function writeTextResponse(http:Request req, anydata payload, anydata event) returns error? {
+    req.setTextPayload(<string> payload);
+}
+
+function writeBinaryResponse(http:Request req, anydata payload, anydata event) returns error? {
+    req.setBinaryPayload(<byte[]> payload);
+}
+
+isolated function pruneFields(json value, map<json> fields) {
+    if (value is json[]) {
+        foreach json item in value {
+            pruneFields(item, fields);
+        }
+    } else if (value is map<json>) {
+        foreach string key in value.keys() {
+            json fieldSpec = fields[key];
+            if (fieldSpec is ()) {
+                _ = value.remove(key);
+            } else if (fieldSpec is map<json>) {
+                pruneFields(value[key], fieldSpec);
+            }
+        }
+    }
+}
+
+// The Runtime API is a local endpoint which serves one request at a time. The next event request is a long
+// poll which blocks until an event arrives, so its client never times out, and it reuses a single kept-alive
+// HTTP/1.1 connection without pooling overhead.
+final http:ClientConfiguration nextClientConfig = {
+    httpVersion: "1.1",
+    timeoutInMillis: 0,
+    http1Settings: {
+        keepAlive: http:KEEPALIVE_ALWAYS
+    },
+    poolConfig: {
+        maxActiveConnections: 1,
+        maxIdleConnections: 1
+    }
+};
+
+// Responses and errors are posted with their own client, which times out, so a post the Runtime API never
+// answers fails instead of blocking the function instance. The payloads are complete in memory before they are
+// posted, so they are sent with a Content-Length instead of in chunks.
+final http:ClientConfiguration runtimeApiClientConfig = {
+    httpVersion: "1.1",
+    timeoutInMillis: RUNTIME_API_TIMEOUT_MS,
+    http1Settings: {
+        keepAlive: http:KEEPALIVE_ALWAYS,
+        chunking: http:CHUNKING_NEVER
+    },
+    poolConfig: {
+        maxActiveConnections: 1,
+        maxIdleConnections: 1
+    }
+};
+
+# Returns the client which posts the responses and errors to the Runtime API.
+function newRuntimeClient() returns http:Client {
+    return newClient(runtimeApiClientConfig);
+}
+
+# Returns the client which long polls the Runtime API for the next event and for the restore of a snapshot.
+function newNextClient() returns http:Client {
+    return newClient(nextClientConfig);
+}
+
+function newClient(http:ClientConfiguration config) returns http:Client {
+    return new("http://" + system:getEnv("AWS_LAMBDA_RUNTIME_API"), config);
+}
+
+# Calls an `@awslambda:Init` function. The init functions are called in the init phase before the selected
+# handler starts polling for events, and the remaining ones are skipped once one of them fails.
+#
+# + name - the name of the init function
+# + initFunc - the init function
+public function __runInit(string name, InitFunction initFunc) {
+    if (system:getEnv(TRAINING_ENV) == "true" || initError is error) {
+        // init functions usually connect to other services, which are not available for the training run
         return;
     }
-    string handler = hsc[1];
-    var func = functions[handler];
-    if (func is FunctionEntry) {
-        while (true) {
-            var resp = clientEP->get(BASE_URL + "next");
-            if (resp is http:Response) {
-                processEvent(clientEP, resp, func);
-            } else {
-                io:println("Error - network failure polling for next event: ", resp);
-            }
+    var result = trap initFunc();
+    if (result is error) {
+        initError = error("Init function " + name + " failed", result);
+    }
+}
+
+# Processes the events of the selected handler until the function instance is shut down.
+#
+# + func - the proxy of the selected handler
+# + eventParser - the event parser of the selected handler
+# + responseWriter - the response writer of the selected handler
+public function __process(FunctionType func, EventParser eventParser, ResponseWriter responseWriter) {
+    http:Client clientEP = newRuntimeClient();
+    http:Client nextEP = newNextClient();
+    if (system:getEnv(TRAINING_ENV) == "true") {
+        // build time training run used to record the classes for the AppCDS archive,
+        // there is no runtime API to poll for events
+        return;
+    }
+    error? failure = initError;
+    if (failure is error) {
+        reportInitError(clientEP, failure);
+        return;
+    }
+    if (isSnapStart()) {
+        [http:Client, http:Client]? restoredEPs = checkpointAndRestore(clientEP, nextEP, func, eventParser,
+                                                                       responseWriter);
+        if (restoredEPs is ()) {
+            return;
         }
+        [clientEP, nextEP] = restoredEPs;
+    }
+    while (true) {
+        int nextStart = startStage();
+        var resp = nextEP->get(NEXT_URL);
+        // the wait for this event belongs to the next window if the current one is flushed
+        flushIdleMetrics();
+        endStage(STAGE_NEXT, nextStart);
+        if (resp is http:Response) {
+            processEvent(clientEP, resp, func, eventParser, responseWriter);
+            completeMetricsInvocation();
+        } else {
+            io:println("Error - network failure polling for next event: ", resp);
+        }
+    }
+}
+
+# Reports a `_HANDLER` value which does not select any of the handlers of the module.
+public function __invalidHandler() {
+    if (system:getEnv(TRAINING_ENV) == "true") {
+        // training runs of modules packaged as a single artifact do not select a handler, so only the
+        // runtime API client is initialised
+        _ = newRuntimeClient();
+        return;
+    }
+    string handlerStr = system:getEnv("_HANDLER");
+    if (selectedHandler == "") {
+        io:println("Error - invalid handler string: ", handlerStr, ", should be of format {BALX_NAME}.{FUNC_NAME}");
     } else {
-        io:println("Error - invalid handler: ", handler);
+        io:println("Error - invalid handler: ", selectedHandler);
     }
 }
 
@@ -130,38 +398,124 @@ isolated function updateInvocationContext(Context ctx) {
     context.attributes["traceId"] = ctx.getTraceId();
 }
 
-function processEvent(http:Client clientEP, http:Response resp, FunctionEntry funcEntry) {
-    var content = resp.getJsonPayload();
-    if (content is json) {
-        Context ctx = generateContext(resp);
-        updateInvocationContext(ctx);
-        http:Request req = new;
-        // call the target function, handle any errors if raised by the function
-        FunctionType func = funcEntry[0];
-        var event = jsonToEventType(content, funcEntry[1]);
-        json|error funcResp;
-        if event is error {
-            funcResp = error("Invalid event type", cause = <@untainted> event);
+function processEvent(http:Client clientEP, http:Response resp, FunctionType func, EventParser eventParser,
+                      ResponseWriter responseWriter) {
+    Context ctx = generateContext(resp);
+    updateInvocationContext(ctx);
+    clearDecodedPayloads();
+    http:Request req = new;
+    // call the target function, handle any errors if raised by the function
+    int parseStart = startStage();
+    string? cacheKey = resultCacheEnabled ? getResultCacheKey(resp) : ();
+    CachedResult? cached = cacheKey is string ? lookupResult(<@untainted> cacheKey) : ();
+    anydata event = ();
+    anydata|error funcResp;
+    if (cached is CachedResult) {
+        // identical events are served without converting the event or calling the handler
+        endStage(STAGE_PARSE, parseStart);
+        funcResp = cached.result;
+    } else {
+        var parsed = eventParser(resp);
+        endStage(STAGE_PARSE, parseStart);
+        if parsed is error {
+            funcResp = error("Invalid event type", cause = <@untainted> parsed);
         } else {
-            funcResp = trap func(ctx, event);
-        }
-        if (funcResp is json) {
-            req.setJsonPayload(<@untainted> funcResp);
-            // send the response
-            var result = clientEP->post(BASE_URL + <@untainted> ctx.requestId + "/response", req);
-            if (result is error) {
-                io:println("Error - sending response: ", result);
+            event = parsed;
+            int handlerStart = startStage();
+            funcResp = invokeWithDeadline(func, ctx, event);
+            endStage(STAGE_HANDLER, handlerStart);
+            if (cacheKey is string && funcResp is anydata) {
+                storeResult(<@untainted> cacheKey, <@untainted> funcResp);
             }
+        }
+    }
+    ResponseStream? responseStream = ctx.responseStream;
+    if (responseStream is ResponseStream) {
+        if (funcResp is error && !responseStream.isStarted()) {
+            // nothing has been streamed yet, so the error is reported as usual
+            ctx.responseStream = ();
         } else {
-            json payload = { errorReason: funcResp.message(), errorDetail: funcResp.detail().toString()};
-            req.setJsonPayload(payload);
-            // send the error
-            var result = clientEP->post(BASE_URL + <@untainted> ctx.requestId + "/error", req);
-            if (result is error) {
-                io:println("Error - sending error: ", result);
+            if (funcResp is error) {
+                markResourcesSuspect();
             }
+            closeResponseStream(responseStream, funcResp);
+            runDeferredTasks(ctx);
+            return;
+        }
+    }
+    if (funcResp is anydata) {
+        int serializeStart = startStage();
+        error? written = responseWriter(req, <@untainted> funcResp, <@untainted> event);
+        endStage(STAGE_SERIALIZE, serializeStart);
+        if (written is error) {
+            funcResp = error("Invalid response type", cause = <@untainted> written);
+        }
+    }
+    string invocationUrl = BASE_URL + <@untainted> ctx.requestId;
+    if (funcResp is error) {
+        // the handler may have left a resource half way through a call
+        markResourcesSuspect();
+        setErrorPayload(req, funcResp);
+        // send the error
+        int postStart = startStage();
+        var result = clientEP->post(invocationUrl + "/error", req);
+        endStage(STAGE_POST, postStart);
+        if (result is error) {
+            io:println("Error - sending error: ", result);
         }
     } else {
-        io:println("Error - invalid payload: ", resp);
+        // send the response
+        int postStart = startStage();
+        var result = clientEP->post(invocationUrl + "/response", req);
+        endStage(STAGE_POST, postStart);
+        if (result is error) {
+            io:println("Error - sending response: ", result);
+        }
+    }
+    runDeferredTasks(ctx);
+}
+
+function reportInitError(http:Client clientEP, error failure) {
+    reportLifecycleError(clientEP, INIT_ERROR_URL, "Runtime.InitError", failure);
+}
+
+function reportLifecycleError(http:Client clientEP, string url, string errorType, error failure) {
+    io:println("Error - ", failure);
+    http:Request req = new;
+    setErrorPayload(req, failure);
+    req.setHeader(ERROR_TYPE_HEADER, errorType);
+    var result = clientEP->post(url, req);
+    if (result is error) {
+        io:println("Error - sending ", errorType, ": ", result);
     }
-}
\ No newline at end of file
+}
+
+function setErrorPayload(http:Request req, error err) {
+    req.setJsonPayload(getErrorPayload(err));
+    string? errorType = getErrorType(err);
+    if (errorType is string) {
+        req.setHeader(ERROR_TYPE_HEADER, errorType);
+    }
+}
+
+function getErrorPayload(error err) returns json {
+    return { errorReason: err.message(), errorDetail: err.detail().toString()};
+}
+
+function getErrorType(error err) returns string? {
+    var errorType = err.detail()["errorType"];
+    return errorType is string ? errorType : ();
+}
+
+function closeResponseStream(ResponseStream responseStream, anydata|error funcResp) {
+    error? failure = ();
+    if (funcResp is error) {
+        // the status of a started response cannot be changed, so the error is sent in its trailers
+        io:println("Error - streaming handler failed after the response started: ", funcResp);
+        failure = funcResp;
+    }
+    var result = responseStream.close(failure);
+    if (result is error) {
+        io:println("Error - sending streamed response: ", result);
+    }
+}
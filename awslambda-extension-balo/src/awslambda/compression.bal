@@ -0,0 +1,332 @@
+// Copyright (c) 2020 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+//
+// WSO2 Inc. licenses this file to you under the Apache License,
+// Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+import ballerina/http;
+import ballerina/io;
+import ballerina/java;
+import ballerina/lang.'float as floats;
+
+const COMPRESSION_THRESHOLD_ENV = "BALLERINA_AWSLAMBDA_COMPRESSION_THRESHOLD";
+const DEFAULT_COMPRESSION_THRESHOLD = 1024;
+const GZIP = "gzip";
+const DEFLATE = "deflate";
+const CONTENT_ENCODING_HEADER = "Content-Encoding";
+const VARY_HEADER = "Vary";
+const ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+// the level which gives most of the size reduction of level 9 at a fraction of its CPU time
+const COMPRESSION_LEVEL = 6;
+const STREAM_BUFFER_SIZE = 8192;
+// the fixed gzip member header of RFC 1952 without a file name or modification time, base64 encoded
+const GZIP_HEADER = "H4sIAAAAAAAA/w==";
+const UTF_8 = "UTF-8";
+
+final int compressionThreshold = getIntEnv(COMPRESSION_THRESHOLD_ENV, DEFAULT_COMPRESSION_THRESHOLD);
+final handle gzipHeader = decodeBase64(getBase64Decoder(), java:fromString(GZIP_HEADER));
+
+// invocations are processed one at a time, so the compressors and their output buffer are shared by all of
+// them, and warm invocations neither allocate native zlib state nor regrow the buffer
+Compressor? gzipCompressor = ();
+Compressor? deflateCompressor = ();
+
+# Compresses a response body with a deflater which is reset and reused for each body. The gzip format is
+# written as a raw deflate stream between the gzip header and trailer, since `java.util.zip.GZIPOutputStream`
+# cannot be reused once it is finished.
+class Compressor {
+
+    private boolean gzip;
+    private handle buffer;
+    private handle deflater;
+    private handle stream;
+    private handle crc;
+
+    function init(boolean gzip) {
+        self.gzip = gzip;
+        self.buffer = newByteArrayOutputStream(STREAM_BUFFER_SIZE);
+        self.deflater = newDeflater(COMPRESSION_LEVEL, gzip);
+        self.stream = newDeflaterOutputStream(self.buffer, self.deflater, STREAM_BUFFER_SIZE);
+        self.crc = newCRC32();
+    }
+
+    function compress(handle input) returns handle|error {
+        resetBuffer(self.buffer);
+        resetDeflater(self.deflater);
+        if (self.gzip) {
+            check writeChunk(self.buffer, gzipHeader);
+        }
+        check writeChunk(self.stream, input);
+        check finishDeflater(self.stream);
+        if (self.gzip) {
+            resetCRC32(self.crc);
+            updateCRC32(self.crc, input);
+            self.writeIntLE(getCRC32Value(self.crc));
+            self.writeIntLE(getBytesRead(self.deflater));
+        }
+        return toByteArray(self.buffer);
+    }
+
+    function writeIntLE(int value) {
+        foreach int i in 0 ..< 4 {
+            writeByte(self.buffer, (value >> (8 * i)) & 0xff);
+        }
+    }
+}
+
+# Returns the response writer for handlers which return an `APIGatewayProxyResponse`. Bodies of at least
+# `BALLERINA_AWSLAMBDA_COMPRESSION_THRESHOLD` bytes are compressed with the gzip or deflate encoding accepted
+# by the `Accept-Encoding` header of the request event, and sent base64 encoded.
+#
+# + return - the response writer
+public function __proxyResponseWriter() returns ResponseWriter {
+    return writeProxyResponse;
+}
+
+function writeProxyResponse(http:Request req, anydata payload, anydata event) returns error? {
+    // the handler may return the same response value from every invocation, so it is not modified in place
+    APIGatewayProxyResponse response = (<APIGatewayProxyResponse> payload).clone();
+    var compressed = compressProxyResponse(response, event);
+    if (compressed is error) {
+        io:println("Error - compressing the response: ", compressed);
+    }
+    // the record is open, so it is converted rather than cast, and a rest field which is not JSON fails the invocation
+    req.setJsonPayload(check response.cloneWithType(json));
+}
+
+function compressProxyResponse(APIGatewayProxyResponse response, anydata event) returns error? {
+    if (response.body == "" || normalizeHeader(response.headers, CONTENT_ENCODING_HEADER) is string) {
+        return;
+    }
+    handle body = response.isBase64Encoded ?
+            decodeBase64(getBase64Decoder(), java:fromString(response.body)) :
+            check getBytes(java:fromString(response.body), java:fromString(UTF_8));
+    if (getArrayLength(body) < compressionThreshold) {
+        return;
+    }
+    // the response depends on the header whether it is compressed or not, so caches must key on it
+    string? vary = normalizeHeader(response.headers, VARY_HEADER);
+    response.headers[VARY_HEADER] = vary is string ? vary + ", " + ACCEPT_ENCODING_HEADER : ACCEPT_ENCODING_HEADER;
+    string? acceptEncoding = getRequestHeader(event, ACCEPT_ENCODING_HEADER);
+    string? encoding = acceptEncoding is string ? selectContentEncoding(acceptEncoding) : ();
+    if (encoding is ()) {
+        return;
+    }
+    handle compressed = check getCompressor(encoding).compress(body);
+    string? encoded = java:toString(encodeBase64(getBase64Encoder(), compressed));
+    response.body = encoded is string ? encoded : "";
+    response.isBase64Encoded = true;
+    response.headers[CONTENT_ENCODING_HEADER] = encoding;
+}
+
+function getCompressor(string encoding) returns Compressor {
+    if (encoding == GZIP) {
+        Compressor? existing = gzipCompressor;
+        if (existing is Compressor) {
+            return existing;
+        }
+        Compressor compressor = new(true);
+        gzipCompressor = compressor;
+        return compressor;
+    }
+    Compressor? existing = deflateCompressor;
+    if (existing is Compressor) {
+        return existing;
+    }
+    Compressor compressor = new(false);
+    deflateCompressor = compressor;
+    return compressor;
+}
+
+# Selects gzip or deflate from an `Accept-Encoding` header value, preferring the encoding with the higher
+# quality value and gzip when both have the same one.
+#
+# + acceptEncoding - the header value
+# + return - the selected encoding, or nil if neither is acceptable
+function selectContentEncoding(string acceptEncoding) returns string? {
+    float? gzipQuality = ();
+    float? deflateQuality = ();
+    float wildcardQuality = 0.0;
+    int start = 0;
+    int length = acceptEncoding.length();
+    while (start < length) {
+        int? separator = acceptEncoding.indexOf(",", start);
+        int end = separator is int ? separator : length;
+        string coding = acceptEncoding.substring(start, end).trim();
+        start = end + 1;
+        float quality = 1.0;
+        int? paramStart = coding.indexOf(";");
+        if (paramStart is int) {
+            quality = parseQuality(coding.substring(paramStart + 1));
+            coding = coding.substring(0, paramStart).trim();
+        }
+        coding = coding.toLowerAscii();
+        if (coding == GZIP || coding == "x-gzip") {
+            gzipQuality = quality;
+        } else if (coding == DEFLATE) {
+            deflateQuality = quality;
+        } else if (coding == "*") {
+            wildcardQuality = quality;
+        }
+    }
+    // the wildcard covers the encodings which are not listed explicitly
+    float gzip = gzipQuality ?: wildcardQuality;
+    float deflate = deflateQuality ?: wildcardQuality;
+    if (gzip > 0.0 && gzip >= deflate) {
+        return GZIP;
+    }
+    return deflate > 0.0 ? DEFLATE : ();
+}
+
+function parseQuality(string params) returns float {
+    string param = params.trim();
+    if (!param.startsWith("q=") && !param.startsWith("Q=")) {
+        return 1.0;
+    }
+    float|error quality = floats:fromString(param.substring(2).trim());
+    return quality is float ? quality : 0.0;
+}
+
+function getRequestHeader(anydata event, string name) returns string? {
+    if (event is map<anydata>) {
+        anydata headers = event["headers"];
+        if (headers is map<anydata>) {
+            foreach [string, anydata] [key, value] in headers.entries() {
+                if (key.toLowerAscii() == name.toLowerAscii() && value is string) {
+                    return value;
+                }
+            }
+        }
+    }
+    return ();
+}
+
+# Moves a header of the response, which may be set in any case, to the given name, so it is not sent twice
+# in different cases once it is updated.
+#
+# + headers - the response headers
+# + name - the header name
+# + return - the header value, or nil if the header is not set
+function normalizeHeader(map<string> headers, string name) returns string? {
+    foreach [string, string] [key, value] in headers.entries() {
+        if (key.toLowerAscii() == name.toLowerAscii()) {
+            _ = headers.remove(key);
+            headers[name] = value;
+            return value;
+        }
+    }
+    return ();
+}
+
+function newByteArrayOutputStream(int size) returns handle = @java:Constructor {
+    'class: "java.io.ByteArrayOutputStream",
+    paramTypes: ["int"]
+} external;
+
+function resetBuffer(handle buffer) = @java:Method {
+    'class: "java.io.ByteArrayOutputStream",
+    name: "reset"
+} external;
+
+function writeByte(handle buffer, int b) = @java:Method {
+    'class: "java.io.ByteArrayOutputStream",
+    name: "write",
+    paramTypes: ["int"]
+} external;
+
+function toByteArray(handle buffer) returns handle = @java:Method {
+    'class: "java.io.ByteArrayOutputStream"
+} external;
+
+function newDeflater(int level, boolean nowrap) returns handle = @java:Constructor {
+    'class: "java.util.zip.Deflater",
+    paramTypes: ["int", "boolean"]
+} external;
+
+function resetDeflater(handle deflater) = @java:Method {
+    'class: "java.util.zip.Deflater",
+    name: "reset"
+} external;
+
+function getBytesRead(handle deflater) returns int = @java:Method {
+    'class: "java.util.zip.Deflater"
+} external;
+
+function newDeflaterOutputStream(handle out, handle deflater, int size) returns handle = @java:Constructor {
+    'class: "java.util.zip.DeflaterOutputStream",
+    paramTypes: ["java.io.OutputStream", "java.util.zip.Deflater", "int"]
+} external;
+
+function finishDeflater(handle stream) returns error? = @java:Method {
+    'class: "java.util.zip.DeflaterOutputStream",
+    name: "finish"
+} external;
+
+function newCRC32() returns handle = @java:Constructor {
+    'class: "java.util.zip.CRC32"
+} external;
+
+function resetCRC32(handle crc) = @java:Method {
+    'class: "java.util.zip.CRC32",
+    name: "reset"
+} external;
+
+function updateCRC32(handle crc, handle bytes) = @java:Method {
+    'class: "java.util.zip.CRC32",
+    name: "update",
+    paramTypes: [{'class: "byte", dimensions: 1}]
+} external;
+
+function getCRC32Value(handle crc) returns int = @java:Method {
+    'class: "java.util.zip.CRC32",
+    name: "getValue"
+} external;
+
+function getArrayLength(handle array) returns int = @java:Method {
+    'class: "java.lang.reflect.Array",
+    name: "getLength",
+    paramTypes: ["java.lang.Object"]
+} external;
+
+function getBytes(handle str, handle charsetName) returns handle|error = @java:Method {
+    'class: "java.lang.String",
+    paramTypes: ["java.lang.String"]
+} external;
+
+function writeChunk(handle output, handle bytes) returns error? = @java:Method {
+    'class: "java.io.OutputStream",
+    name: "write",
+    paramTypes: [{'class: "byte", dimensions: 1}]
+} external;
+
+function getBase64Decoder() returns handle = @java:Method {
+    'class: "java.util.Base64",
+    name: "getDecoder"
+} external;
+
+function decodeBase64(handle decoder, handle src) returns handle = @java:Method {
+    'class: "java.util.Base64$Decoder",
+    name: "decode",
+    paramTypes: ["java.lang.String"]
+} external;
+
+function getBase64Encoder() returns handle = @java:Method {
+    'class: "java.util.Base64",
+    name: "getEncoder"
+} external;
+
+function encodeBase64(handle encoder, handle src) returns handle = @java:Method {
+    'class: "java.util.Base64$Encoder",
+    name: "encodeToString",
+    paramTypes: [{'class: "byte", dimensions: 1}]
+} external;
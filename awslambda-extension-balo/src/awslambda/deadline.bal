@@ -0,0 +1,100 @@
+// Copyright (c) 2020 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+//
+// WSO2 Inc. licenses this file to you under the Apache License,
+// Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+import ballerina/io;
+import ballerina/runtime;
+import ballerina/system;
+import ballerina/time;
+
+const DEADLINE_MARGIN_ENV = "BALLERINA_AWSLAMBDA_DEADLINE_MARGIN_MS";
+const DEFAULT_DEADLINE_MARGIN_MS = 500;
+const HANDLER_TIMEOUT_ERROR_TYPE = "Runtime.HandlerTimeout";
+
+// time before the invocation deadline at which the handler is cancelled, the runtime reports the timeout
+// itself half way through the margin if the handler has not returned by then
+final int deadlineMarginMs = getIntEnv(DEADLINE_MARGIN_ENV, DEFAULT_DEADLINE_MARGIN_MS);
+
+// the longest time a watchdog timer sleeps before it checks whether it was stopped, which bounds how long the
+// timer strand of an invocation outlives the handler
+const WATCHDOG_TICK_MS = 100;
+
+// marks the expiry of a watchdog timer, it is not anydata so it cannot be mistaken for a handler result
+class DeadlineExpiry {
+}
+
+// the watchdog timers of an invocation, which are stopped when the invocation completes
+class WatchdogTimers {
+    boolean stopped = false;
+}
+
+function getIntEnv(string name, int defaultValue) returns int {
+    string value = system:getEnv(name);
+    if (value == "") {
+        return defaultValue;
+    }
+    var intValue = value.cloneWithType(int);
+    if (intValue is int && intValue >= 0) {
+        return intValue;
+    }
+    io:println("Error - invalid ", name, ": ", value, ", using the default");
+    return defaultValue;
+}
+
+# Invokes the handler under a watchdog keyed to the invocation deadline. The handler is signalled with
+# `Context.isCancelled` when the deadline is within the safety margin, and a timeout error is returned if it
+# still has not returned half way through the margin, so the runtime can report it while the function
+# instance is still alive.
+function invokeWithDeadline(FunctionType func, Context ctx, anydata event) returns anydata|error {
+    if (ctx.deadlineMs <= 0) {
+        // no deadline to watch for
+        return trap func(ctx, event);
+    }
+    WatchdogTimers timers = new;
+    future<anydata|error> handler = @strand {thread: "any"} start invokeHandler(func, ctx, event);
+    future<DeadlineExpiry> cancelTimer = @strand {thread: "any"} start expireAt(ctx.deadlineMs - deadlineMarginMs,
+                                                                                timers);
+    var result = wait handler | cancelTimer;
+    if (result is DeadlineExpiry) {
+        ctx.cancelled = true;
+        future<DeadlineExpiry> timeoutTimer = @strand {thread: "any"} start expireAt(ctx.deadlineMs -
+                                                                                       deadlineMarginMs / 2, timers);
+        result = wait handler | timeoutTimer;
+    }
+    // the timer strands end within a tick, instead of sleeping until the deadline of an invocation which is over
+    timers.stopped = true;
+    if (result is DeadlineExpiry) {
+        // the handler strand cannot be stopped, it is left to run and its result is discarded. Its context stays
+        // cancelled, so it can no longer write to the response stream or add deferred tasks.
+        ctx.cancelled = true;
+        return error("Handler timed out", errorType = HANDLER_TIMEOUT_ERROR_TYPE, deadlineMs = ctx.deadlineMs);
+    }
+    return result;
+}
+
+function invokeHandler(FunctionType func, Context ctx, anydata event) returns anydata|error {
+    return trap func(ctx, event);
+}
+
+function expireAt(int timeMs, WatchdogTimers timers) returns DeadlineExpiry {
+    int delayMs = timeMs - time:currentTime().time;
+    while (delayMs > 0 && !timers.stopped) {
+        runtime:sleep(delayMs < WATCHDOG_TICK_MS ? delayMs : WATCHDOG_TICK_MS);
+        delayMs = timeMs - time:currentTime().time;
+    }
+    // the result of a stopped timer is never waited for
+    return new;
+}
@@ -0,0 +1,63 @@
+// Copyright (c) 2020 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+//
+// WSO2 Inc. licenses this file to you under the Apache License,
+// Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+import ballerina/io;
+import ballerina/time;
+
+const DEFERRED_BUDGET_ENV = "BALLERINA_AWSLAMBDA_DEFERRED_BUDGET_MS";
+const DEFAULT_DEFERRED_BUDGET_MS = 1000;
+
+// time the deferred tasks of an invocation may take before the next event is polled
+final int deferredBudgetMs = getIntEnv(DEFERRED_BUDGET_ENV, DEFAULT_DEFERRED_BUDGET_MS);
+
+# Function type of the tasks a handler defers until its response has been sent.
+public type DeferredTask function () returns error?;
+
+# Runs the deferred tasks of an invocation after its response has been sent, and before the next event is
+# polled. The tasks run in the order they were added, and the ones which have not finished when the budget
+# runs out are left behind, so a slow task cannot hold up the next invocation.
+function runDeferredTasks(Context ctx) {
+    DeferredTask[] tasks = ctx.deferredTasks;
+    if (tasks.length() == 0) {
+        return;
+    }
+    int budgetMs = deferredBudgetMs;
+    if (ctx.deadlineMs > 0 && ctx.getRemainingExecutionTime() < budgetMs) {
+        // the deferred tasks still count towards the invocation deadline
+        budgetMs = ctx.getRemainingExecutionTime();
+    }
+    WatchdogTimers timers = new;
+    future<int> worker = @strand {thread: "any"} start runTasks(tasks);
+    future<DeadlineExpiry> budgetTimer = @strand {thread: "any"} start expireAt(time:currentTime().time + budgetMs,
+                                                                                timers);
+    var result = wait worker | budgetTimer;
+    // the budget timer ends within a tick when the tasks finish before the budget runs out
+    timers.stopped = true;
+    if (result is DeadlineExpiry) {
+        io:println("Error - deferred tasks of request ", ctx.requestId, " did not finish in ", budgetMs, "ms");
+    }
+}
+
+function runTasks(DeferredTask[] tasks) returns int {
+    foreach DeferredTask task in tasks {
+        var result = trap task();
+        if (result is error) {
+            io:println("Error - deferred task failed: ", result);
+        }
+    }
+    return tasks.length();
+}
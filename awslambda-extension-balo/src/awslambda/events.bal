@@ -69,6 +69,14 @@ public type APIGatewayProxyRequest record {
     boolean isBase64Encoded;
 };
 
+public type APIGatewayProxyResponse record {
+    int statusCode = 200;
+    map<string> headers = {};
+    map<string[]> multiValueHeaders?;
+    string body = "";
+    boolean isBase64Encoded = false;
+};
+
 public type DynamoDBStreamRecord record {
     map<json> Keys;
     map<json> NewImage?;
@@ -150,4 +158,49 @@ public type SESRecord record {
 
 public type SESEvent record {
     SESRecord[] Records;
-};
\ No newline at end of file
+};
+
+public type KinesisElement record {
+    string kinesisSchemaVersion;
+    string partitionKey;
+    string sequenceNumber;
+    string data;
+    decimal approximateArrivalTimestamp;
+};
+
+public type KinesisRecord record {
+    KinesisElement kinesis;
+    string eventSource;
+    string eventVersion;
+    string eventID;
+    string eventName;
+    string invokeIdentityArn;
+    string awsRegion;
+    string eventSourceARN;
+};
+
+public type KinesisEvent record {
+    KinesisRecord[] Records;
+};
+
+public type KafkaRecord record {
+    string topic;
+    int partition;
+    int offset;
+    int timestamp;
+    string timestampType;
+    string key?;
+    string value?;
+    map<int[]>[] headers;
+};
+
+public type KafkaEvent record {
+    string eventSource;
+    string eventSourceArn?;
+    string bootstrapServers;
+    map<KafkaRecord[]> records;
+};
+
+public type MSKEvent KafkaEvent;
+
+public type SelfManagedKafkaEvent KafkaEvent;
@@ -0,0 +1,199 @@
+// Copyright (c) 2020 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+//
+// WSO2 Inc. licenses this file to you under the Apache License,
+// Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+import ballerina/io;
+import ballerina/system;
+import ballerina/time;
+
+const METRICS_BATCH_SIZE_ENV = "BALLERINA_AWSLAMBDA_METRICS_BATCH_SIZE";
+const METRICS_INTERVAL_ENV = "BALLERINA_AWSLAMBDA_METRICS_INTERVAL_MS";
+const METRICS_NAMESPACE_ENV = "BALLERINA_AWSLAMBDA_METRICS_NAMESPACE";
+const DEFAULT_METRICS_BATCH_SIZE = 100;
+const DEFAULT_METRICS_INTERVAL_MS = 60000;
+const DEFAULT_METRICS_NAMESPACE = "Ballerina/Lambda";
+
+// the invocation stages, in the order they happen
+const STAGE_NEXT = "NextEventLatency";
+const STAGE_PARSE = "EventParseLatency";
+const STAGE_HANDLER = "HandlerLatency";
+const STAGE_SERIALIZE = "ResponseSerializeLatency";
+const STAGE_POST = "ResponsePostLatency";
+
+final int metricsBatchSize = getIntEnv(METRICS_BATCH_SIZE_ENV, DEFAULT_METRICS_BATCH_SIZE);
+final int metricsIntervalMs = getIntEnv(METRICS_INTERVAL_ENV, DEFAULT_METRICS_INTERVAL_MS);
+
+final string[] metricStages = [STAGE_NEXT, STAGE_PARSE, STAGE_HANDLER, STAGE_SERIALIZE, STAGE_POST];
+
+// upper bounds of the histogram buckets in milliseconds, the last bucket holds the longer durations
+final float[] bucketBoundsMs = [0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0, 25.0, 50.0, 100.0, 250.0, 500.0, 1000.0,
+                                2500.0, 5000.0, 10000.0];
+
+boolean metricsEnabled = false;
+// bucket counts of each stage since the metrics were last emitted
+map<int[]> histograms = {};
+// the longest duration of each stage, which represents the last bucket
+map<float> maxDurationsMs = {};
+int metricsInvocations = 0;
+int metricsWindowStartMs = 0;
+// the result cache counters when the metrics were last emitted
+int emittedCacheHits = 0;
+int emittedCacheMisses = 0;
+
+// logs the metrics of the last window when the function instance shuts down, the module listeners are stopped
+// when the JVM receives SIGTERM
+listener MetricsFlusher metricsFlusher = new;
+
+class MetricsFlusher {
+    public function start() returns error? {
+    }
+
+    public function gracefulStop() returns error? {
+        flushMetrics();
+    }
+
+    public function immediateStop() returns error? {
+        flushMetrics();
+    }
+
+    public function attach(service s, string? name = ()) returns error? {
+    }
+
+    public function detach(service s) returns error? {
+    }
+}
+
+# Enables the invocation stage metrics of the selected handler.
+public function __enableMetrics() {
+    metricsEnabled = true;
+    metricsWindowStartMs = time:currentTime().time;
+}
+
+# Returns the start time of a stage, or 0 if the metrics are not enabled.
+#
+# + return - the start time in nanoseconds
+function startStage() returns int {
+    return metricsEnabled ? time:nanoTime() : 0;
+}
+
+# Adds the duration of a stage which started at the given time to its histogram.
+#
+# + stage - the stage name
+# + startNanos - the start time returned by `startStage`
+function endStage(string stage, int startNanos) {
+    if (!metricsEnabled) {
+        return;
+    }
+    float durationMs = <float> (time:nanoTime() - startNanos) / 1000000.0;
+    int[] counts = histograms[stage] ?: newBuckets();
+    int bucket = 0;
+    while (bucket < bucketBoundsMs.length() && durationMs > bucketBoundsMs[bucket]) {
+        bucket += 1;
+    }
+    counts[bucket] = counts[bucket] + 1;
+    histograms[stage] = counts;
+    if (durationMs > (maxDurationsMs[stage] ?: 0.0)) {
+        maxDurationsMs[stage] = durationMs;
+    }
+}
+
+function newBuckets() returns int[] {
+    int[] counts = [];
+    foreach int i in 0 ... bucketBoundsMs.length() {
+        counts.push(0);
+    }
+    return counts;
+}
+
+# Counts a completed invocation, and emits the metrics when the batch size or the interval is reached.
+function completeMetricsInvocation() {
+    if (!metricsEnabled) {
+        return;
+    }
+    metricsInvocations += 1;
+    int nowMs = time:currentTime().time;
+    if (metricsInvocations >= metricsBatchSize || nowMs - metricsWindowStartMs >= metricsIntervalMs) {
+        emitMetrics(nowMs);
+    }
+}
+
+# Emits the metrics of the current window before the next event is processed, if its interval ended while the
+# function instance was waiting for the event. An empty window starts over with the event instead.
+function flushIdleMetrics() {
+    if (!metricsEnabled) {
+        return;
+    }
+    int nowMs = time:currentTime().time;
+    if (metricsInvocations == 0) {
+        metricsWindowStartMs = nowMs;
+    } else if (nowMs - metricsWindowStartMs >= metricsIntervalMs) {
+        emitMetrics(nowMs);
+    }
+}
+
+# Emits the metrics of the current window if it has any invocations.
+function flushMetrics() {
+    if (metricsEnabled && metricsInvocations > 0) {
+        emitMetrics(time:currentTime().time);
+    }
+}
+
+function emitMetrics(int nowMs) {
+    json[] metricDefinitions = [];
+    map<json> line = {};
+    foreach string stage in metricStages {
+        int[]? counts = histograms[stage];
+        if (counts is ()) {
+            continue;
+        }
+        json[] values = [];
+        json[] valueCounts = [];
+        foreach int i in 0 ..< counts.length() {
+            if (counts[i] > 0) {
+                // each bucket is represented by its upper bound
+                values.push(i < bucketBoundsMs.length() ? bucketBoundsMs[i] : (maxDurationsMs[stage] ?: 0.0));
+                valueCounts.push(counts[i]);
+            }
+        }
+        metricDefinitions.push({ Name: stage, Unit: "Milliseconds" });
+        line[stage] = { Values: values, Counts: valueCounts };
+    }
+    if (resultCacheEnabled) {
+        metricDefinitions.push({ Name: "ResultCacheHits", Unit: "Count" });
+        metricDefinitions.push({ Name: "ResultCacheMisses", Unit: "Count" });
+        line["ResultCacheHits"] = resultCacheHits - emittedCacheHits;
+        line["ResultCacheMisses"] = resultCacheMisses - emittedCacheMisses;
+        emittedCacheHits = resultCacheHits;
+        emittedCacheMisses = resultCacheMisses;
+    }
+    string namespace = system:getEnv(METRICS_NAMESPACE_ENV);
+    string functionName = system:getEnv("AWS_LAMBDA_FUNCTION_NAME");
+    line["_aws"] = {
+        Timestamp: nowMs,
+        CloudWatchMetrics: [{
+            Namespace: namespace == "" ? DEFAULT_METRICS_NAMESPACE : namespace,
+            Dimensions: [["FunctionName"]],
+            Metrics: metricDefinitions
+        }]
+    };
+    line["FunctionName"] = functionName == "" ? selectedHandler : functionName;
+    line["Invocations"] = metricsInvocations;
+    io:println(line.toJsonString());
+    histograms = {};
+    maxDurationsMs = {};
+    metricsInvocations = 0;
+    metricsWindowStartMs = nowMs;
+}
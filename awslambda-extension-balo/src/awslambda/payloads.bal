@@ -0,0 +1,80 @@
+// Copyright (c) 2020 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+//
+// WSO2 Inc. licenses this file to you under the Apache License,
+// Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+import ballerina/lang.'array as arrays;
+
+// the decoded payloads of the current invocation, keyed by their base64 encoding. They are kept out of the event
+// records, so a payload cannot set them and they are not serialised with the event. The encoded strings are the
+// ones held by the event, so their hash is only computed once.
+map<byte[]> decodedPayloads = {};
+
+# Returns the decoded data of a Kinesis record. The base64 encoded data is only decoded on the first call, and
+# the decoded bytes are cached for the invocation, so records which are skipped by a handler are never decoded.
+#
+# + kinesisRecord - the Kinesis record
+# + return - the decoded data, or an error if the data is not valid base64
+public function getKinesisData(KinesisRecord kinesisRecord) returns byte[]|error {
+    return decodePayload(kinesisRecord.kinesis.data);
+}
+
+# Returns the decoded key of a Kafka record. The base64 encoded key is only decoded on the first call, and the
+# decoded bytes are cached for the invocation.
+#
+# + kafkaRecord - the Kafka record of an MSK or self-managed Kafka event
+# + return - the decoded key, () if the record has no key, or an error if the key is not valid base64
+public function getKafkaKey(KafkaRecord kafkaRecord) returns byte[]|error? {
+    string? key = kafkaRecord?.key;
+    if (key is ()) {
+        return;
+    }
+    return decodePayload(key);
+}
+
+# Returns the decoded value of a Kafka record. The base64 encoded value is only decoded on the first call, and
+# the decoded bytes are cached for the invocation.
+#
+# + kafkaRecord - the Kafka record of an MSK or self-managed Kafka event
+# + return - the decoded value, () if the record has no value, or an error if the value is not valid base64
+public function getKafkaValue(KafkaRecord kafkaRecord) returns byte[]|error? {
+    string? value = kafkaRecord?.value;
+    if (value is ()) {
+        return;
+    }
+    return decodePayload(value);
+}
+
+function decodePayload(string encoded) returns byte[]|error {
+    byte[]? decoded = ();
+    lock {
+        decoded = decodedPayloads[encoded];
+    }
+    if (decoded is byte[]) {
+        return decoded;
+    }
+    // decoded outside of the lock, so the workers of a batch decode their records in parallel
+    byte[] data = check arrays:fromBase64(encoded);
+    lock {
+        decodedPayloads[encoded] = data;
+    }
+    return data;
+}
+
+// drops the payloads decoded for the previous invocation
+function clearDecodedPayloads() {
+    lock {
+        decodedPayloads = {};
+    }
+}
@@ -0,0 +1,212 @@
+// Copyright (c) 2020 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+//
+// WSO2 Inc. licenses this file to you under the Apache License,
+// Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+import ballerina/time;
+
+const DEFAULT_HEALTH_CHECK_INTERVAL_MS = 30000;
+
+# Function type of the factories which create the resources of the registry, such as database and HTTP clients.
+public type ResourceFactory function () returns any|error;
+
+# Function type of the health checks of the resources of the registry. A resource whose health check returns
+# an error is created again.
+public type HealthCheck function (any 'resource) returns error?;
+
+type ResourceEntry record {|
+    ResourceFactory factory;
+    HealthCheck? healthCheck;
+    int healthCheckIntervalMs;
+    boolean created = false;
+    any 'resource = ();
+    int checkedAtMs = 0;
+    // set when an invocation failed or timed out, which may have left the resource in an unusable state
+    boolean suspect = false;
+    // the factory or health check call in flight, which the other strands which ask for the resource wait for
+    future<ResourceClaim>? inflight = ();
+    // incremented when the resource is dropped, so a resource created or checked before is not published
+    int generation = 0;
+|};
+
+// the next step of a strand which asked for a resource, decided in the lock, and the outcome of a factory or
+// health check call
+type ResourceClaim record {|
+    // the factory or health check call to wait for, when the resource is not ready
+    future<ResourceClaim>? inflight = ();
+    boolean done = false;
+    // the result once done
+    any|error result = ();
+|};
+
+// the resources of the function instance, every access is in a lock and a resource is created by one strand at
+// a time, so concurrent strands of a handler create each resource once
+map<ResourceEntry> resources = {};
+
+# Registers a resource which handlers get through `Context.getResource`. The resource is created on its first
+# use and reused by the invocations of the warm function instance. Registering a name again replaces the
+# resource. Call it from an `@awslambda:Init` function or a module level initialiser. Callers of
+# `Context.getResource` give the type the factory creates, for example with
+# `<http:Client> check ctx.getResource("orders", http:Client)`.
+#
+# + name - the resource name
+# + factory - the function which creates the resource, which may get other resources of the registry
+# + healthCheck - the function which checks the resource before it is reused, when it has not been checked
+#                 for `healthCheckIntervalMs` milliseconds or an invocation failed since it was last checked
+# + healthCheckIntervalMs - the interval of the health checks
+public function registerResource(string name, ResourceFactory factory, HealthCheck? healthCheck = (),
+                                 int healthCheckIntervalMs = DEFAULT_HEALTH_CHECK_INTERVAL_MS) {
+    lock {
+        resources[name] = { factory: factory, healthCheck: healthCheck,
+                            healthCheckIntervalMs: healthCheckIntervalMs };
+    }
+}
+
+function acquireResource(string name) returns any|error {
+    ResourceClaim claim = claimResource(name);
+    while (!claim.done) {
+        future<ResourceClaim>? inflight = claim.inflight;
+        if (inflight is future<ResourceClaim>) {
+            // the strands which ask for the resource while it is created or checked share the outcome of the call
+            claim = wait inflight;
+        }
+        if (!claim.done) {
+            // the resource was dropped or registered again meanwhile, or it failed its health check
+            claim = claimResource(name);
+        }
+    }
+    return claim.result;
+}
+
+function claimResource(string name) returns ResourceClaim {
+    ResourceClaim claim = {};
+    lock {
+        ResourceEntry? entry = resources[name];
+        if (entry is ()) {
+            claim = { done: true, result: error("Resource " + name + " is not registered") };
+        } else {
+            future<ResourceClaim>? inflight = entry.inflight;
+            int nowMs = time:currentTime().time;
+            if (inflight is future<ResourceClaim>) {
+                claim = { inflight: inflight };
+            } else if (!entry.created) {
+                // the factory and the health check run on their own strand outside of the lock, so they hold up
+                // only the strands which wait for the same resource, and they may get other resources themselves
+                future<ResourceClaim> creation = start createResource(name, entry, entry.generation);
+                entry.inflight = creation;
+                claim = { inflight: creation };
+            } else if (entry.healthCheck is HealthCheck &&
+                    (entry.suspect || nowMs - entry.checkedAtMs >= entry.healthCheckIntervalMs)) {
+                future<ResourceClaim> healthCheckCall = start checkResource(name, entry, entry.generation,
+                                                                            entry.'resource);
+                entry.inflight = healthCheckCall;
+                claim = { inflight: healthCheckCall };
+            } else {
+                claim = { done: true, result: entry.'resource };
+            }
+        }
+    }
+    return claim;
+}
+
+function createResource(string name, ResourceEntry entry, int generation) returns ResourceClaim {
+    ResourceFactory factory = entry.factory;
+    any|error created = trap factory();
+    int nowMs = time:currentTime().time;
+    ResourceClaim claim = {};
+    lock {
+        entry.inflight = ();
+        // the resource is published only if it was not dropped or registered again meanwhile, otherwise the
+        // strand starts over
+        if (resources[name] === entry && entry.generation == generation) {
+            if (created is error) {
+                // a failed factory leaves the entry empty, so the next use tries again
+                claim = { done: true, result: error("Creating resource " + name + " failed", created) };
+            } else {
+                entry.'resource = created;
+                entry.created = true;
+                entry.checkedAtMs = nowMs;
+                entry.suspect = false;
+                claim = { done: true, result: created };
+            }
+        }
+    }
+    return claim;
+}
+
+function checkResource(string name, ResourceEntry entry, int generation, any 'resource) returns ResourceClaim {
+    HealthCheck? healthCheck = entry.healthCheck;
+    error? failure = healthCheck is HealthCheck ? trap healthCheck('resource) : ();
+    int nowMs = time:currentTime().time;
+    ResourceClaim claim = {};
+    lock {
+        entry.inflight = ();
+        if (resources[name] === entry && entry.generation == generation) {
+            if (failure is error) {
+                // the strand starts over and creates the resource again
+                resetResource(entry);
+            } else {
+                entry.checkedAtMs = nowMs;
+                entry.suspect = false;
+                claim = { done: true, result: 'resource };
+            }
+        }
+    }
+    return claim;
+}
+
+# Returns the resource, or an error if it is not of the given type. The exact type of the resource is compared,
+# since the language has no type test against a type descriptor which is only known at runtime.
+function checkResourceType(string name, any 'resource, typedesc<any> resourceType) returns any|error {
+    string actualType = (typeof 'resource).toString();
+    if (actualType != resourceType.toString()) {
+        return error("Resource " + name + " is a " + actualType + ", not a " + resourceType.toString());
+    }
+    return 'resource;
+}
+
+function dropResource(string name) {
+    lock {
+        ResourceEntry? entry = resources[name];
+        if (entry is ResourceEntry) {
+            resetResource(entry);
+        }
+    }
+}
+
+# Marks the created resources for a health check before they are reused, after an invocation failed or timed
+# out while it may have been using them.
+function markResourcesSuspect() {
+    lock {
+        foreach ResourceEntry entry in resources {
+            entry.suspect = entry.created;
+        }
+    }
+}
+
+# Drops the created resources, whose connections are not valid in an instance restored from a snapshot.
+function invalidateResources() {
+    lock {
+        foreach ResourceEntry entry in resources {
+            resetResource(entry);
+        }
+    }
+}
+
+function resetResource(ResourceEntry entry) {
+    entry.created = false;
+    entry.'resource = ();
+    entry.suspect = false;
+    entry.generation += 1;
+}
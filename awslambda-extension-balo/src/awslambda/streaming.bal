@@ -0,0 +1,219 @@
+// Copyright (c) 2020 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+//
+// WSO2 Inc. licenses this file to you under the Apache License,
+// Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+import ballerina/java;
+import ballerina/lang.'int as ints;
+import ballerina/system;
+
+const RESPONSE_MODE_HEADER = "Lambda-Runtime-Function-Response-Mode";
+const STREAMING_RESPONSE_MODE = "streaming";
+const ERROR_BODY_HEADER = "Lambda-Runtime-Function-Error-Body";
+// the error type sent for a handler error which does not set one
+const HANDLER_ERROR_TYPE = "Runtime.HandlerError";
+const CRLF = "\r\n";
+const HTTP_HEAD_ENCODING = "ISO-8859-1";
+
+# Sink for the response of a streaming handler. The chunks are sent to the Runtime API as they are written,
+# using chunked transfer encoding and the streaming response mode, so the client receives the first bytes
+# before the handler returns and the response is never held in memory as a whole. The request is written
+# directly to a socket, since the HTTP clients cannot send the trailers which report an error of the handler
+# after the response has started. Once the request has been cancelled, the stream refuses further chunks.
+public class ResponseStream {
+
+    private Context ctx;
+    private string address;
+    private string path;
+    private string contentType = "application/octet-stream";
+    private handle? socket = ();
+    private handle? output = ();
+
+    isolated function init(Context ctx, string address, string path) {
+        self.ctx = ctx;
+        self.address = address;
+        self.path = path;
+    }
+
+    # Sets the content type of the response. It has no effect after the first chunk is written.
+    # + contentType - the content type
+    public function setContentType(string contentType) {
+        self.contentType = contentType;
+    }
+
+    # Writes a string chunk to the response, encoded as UTF-8.
+    # + chunk - the chunk to write
+    # + return - an error if the chunk could not be sent or the request has been cancelled
+    public function write(string chunk) returns error? {
+        return self.writeBytes(chunk.toBytes());
+    }
+
+    # Writes a binary chunk to the response.
+    # + chunk - the chunk to write
+    # + return - an error if the chunk could not be sent or the request has been cancelled
+    public function writeBytes(byte[] chunk) returns error? {
+        if (self.ctx.isCancelled()) {
+            // the runtime ends the response of a handler which outlives its deadline
+            return error("Request " + self.ctx.requestId + " has been cancelled");
+        }
+        handle output = check self.open();
+        int length = chunk.length();
+        if (length == 0) {
+            // an empty chunk would end the response
+            return;
+        }
+        check writeAll(output, (ints:toHexString(length) + CRLF).toBytes());
+        check writeToOutput(output, chunk, 0, length);
+        check writeAll(output, CRLF.toBytes());
+        check flushOutput(output);
+    }
+
+    # Returns whether any chunk has been written, after which errors can no longer be reported to the
+    # Runtime API as invocation errors.
+    # + return - true if the response has started
+    public function isStarted() returns boolean {
+        return self.output is handle;
+    }
+
+    function open() returns handle|error {
+        handle? existing = self.output;
+        if (existing is handle) {
+            return existing;
+        }
+        int? separator = self.address.lastIndexOf(":");
+        if (separator is ()) {
+            return error("Invalid Runtime API address " + self.address);
+        }
+        handle socket = check newSocket(java:fromString(self.address.substring(0, separator)),
+                                        check ints:fromString(self.address.substring(separator + 1)));
+        self.socket = socket;
+        // the chunks are small writes which should not wait for the acknowledgement of the previous one
+        check setTcpNoDelay(socket, true);
+        handle output = newBufferedOutputStream(check getSocketOutputStream(socket));
+        // the head is buffered and sent along with the first chunk
+        check writeAll(output, ("POST " + self.path + " HTTP/1.1" + CRLF +
+                                "Host: " + self.address + CRLF +
+                                RESPONSE_MODE_HEADER + ": " + STREAMING_RESPONSE_MODE + CRLF +
+                                "Content-Type: " + self.contentType + CRLF +
+                                "Transfer-Encoding: chunked" + CRLF +
+                                "Trailer: " + ERROR_TYPE_HEADER + ", " + ERROR_BODY_HEADER + CRLF +
+                                "Connection: close" + CRLF + CRLF).toBytes());
+        self.output = output;
+        return output;
+    }
+
+    # Ends the response. The error of a handler which failed after the response started is sent in the
+    # trailers, with its body base64 encoded.
+    # + failure - the error of the handler, if it failed
+    # + return - an error if the response could not be sent or the Runtime API rejected it
+    function close(error? failure = ()) returns error? {
+        error? result = self.finish(failure);
+        handle? socket = self.socket;
+        error? closed = socket is handle ? closeSocket(socket) : ();
+        return result is error ? result : closed;
+    }
+
+    function finish(error? failure) returns error? {
+        handle output = check self.open();
+        string lastChunk = "0" + CRLF;
+        if (failure is error) {
+            lastChunk += ERROR_TYPE_HEADER + ": " + (getErrorType(failure) ?: HANDLER_ERROR_TYPE) + CRLF +
+                         ERROR_BODY_HEADER + ": " + getErrorPayload(failure).toJsonString().toBytes().toBase64() +
+                         CRLF;
+        }
+        check writeAll(output, (lastChunk + CRLF).toBytes());
+        check flushOutput(output);
+        handle reader = newBufferedReader(check newInputStreamReader(check getSocketInputStream(<handle> self.socket),
+                                                                      java:fromString(HTTP_HEAD_ENCODING)));
+        string? statusLine = java:toString(check readLine(reader));
+        // the status code follows the protocol version, as in `HTTP/1.1 202 Accepted`
+        int|error status = statusLine is string && statusLine.length() >= 12 ?
+                           ints:fromString(statusLine.substring(9, 12)) : error("No status line");
+        if (status is error) {
+            return error("Runtime API sent an invalid response to the streamed response", status);
+        }
+        if (status >= 300) {
+            return error("Runtime API rejected the streamed response with status " + status.toString());
+        }
+    }
+}
+
+# Creates the response stream of the current invocation, which is passed to streaming handlers.
+#
+# + ctx - the invocation context
+# + return - the response stream
+public function __responseStream(Context ctx) returns ResponseStream {
+    ResponseStream responseStream = new(ctx, system:getEnv("AWS_LAMBDA_RUNTIME_API"),
+                                        BASE_URL + ctx.requestId + "/response");
+    ctx.responseStream = responseStream;
+    return responseStream;
+}
+
+function writeAll(handle output, byte[] bytes) returns error? {
+    return writeToOutput(output, bytes, 0, bytes.length());
+}
+
+function newSocket(handle host, int port) returns handle|error = @java:Constructor {
+    'class: "java.net.Socket",
+    paramTypes: ["java.lang.String", "int"]
+} external;
+
+function setTcpNoDelay(handle socket, boolean on) returns error? = @java:Method {
+    'class: "java.net.Socket"
+} external;
+
+function getSocketOutputStream(handle socket) returns handle|error = @java:Method {
+    'class: "java.net.Socket",
+    name: "getOutputStream"
+} external;
+
+function getSocketInputStream(handle socket) returns handle|error = @java:Method {
+    'class: "java.net.Socket",
+    name: "getInputStream"
+} external;
+
+function closeSocket(handle socket) returns error? = @java:Method {
+    'class: "java.net.Socket",
+    name: "close"
+} external;
+
+function newBufferedOutputStream(handle out) returns handle = @java:Constructor {
+    'class: "java.io.BufferedOutputStream",
+    paramTypes: ["java.io.OutputStream"]
+} external;
+
+function writeToOutput(handle output, byte[] bytes, int offset, int length) returns error? = @java:Method {
+    'class: "java.io.OutputStream",
+    name: "write",
+    paramTypes: [{'class: "byte", dimensions: 1}, "int", "int"]
+} external;
+
+function flushOutput(handle output) returns error? = @java:Method {
+    'class: "java.io.OutputStream",
+    name: "flush"
+} external;
+
+function newInputStreamReader(handle input, handle charsetName) returns handle|error = @java:Constructor {
+    'class: "java.io.InputStreamReader",
+    paramTypes: ["java.io.InputStream", "java.lang.String"]
+} external;
+
+function newBufferedReader(handle reader) returns handle = @java:Constructor {
+    'class: "java.io.BufferedReader",
+    paramTypes: ["java.io.Reader"]
+} external;
+
+function readLine(handle reader) returns handle|error = @java:Method {
+    'class: "java.io.BufferedReader"
+} external;
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.ballerinax.awslambda.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Utilities shared by the benchmarks.
+ */
+final class BenchmarkUtils {
+    private static final int ENTRY_SIZE = 8 * 1024;
+
+    private BenchmarkUtils() {
+    }
+
+    /**
+     * Writes a jar of about the given size. Half of each entry is random and the other half repeats it, so the
+     * entries compress about as well as class files do.
+     *
+     * @param jar       jar to write
+     * @param sizeBytes approximate size of the uncompressed entries
+     * @throws IOException if the jar cannot be written
+     */
+    static void writeJar(Path jar, long sizeBytes) throws IOException {
+        // a fixed seed, so every trial packages the same content
+        Random random = new Random(sizeBytes);
+        byte[] content = new byte[ENTRY_SIZE];
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (long written = 0, i = 0; written < sizeBytes; written += ENTRY_SIZE, i++) {
+                byte[] half = new byte[ENTRY_SIZE / 2];
+                random.nextBytes(half);
+                System.arraycopy(half, 0, content, 0, half.length);
+                System.arraycopy(half, 0, content, half.length, half.length);
+                zos.putNextEntry(new ZipEntry("org/example/module" + (i % 64) + "/Class" + i + ".class"));
+                zos.write(content);
+                zos.closeEntry();
+            }
+        }
+    }
+
+    static void deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.ballerinax.awslambda.benchmarks;
+
+import org.ballerinax.awslambda.PackagingManifest;
+import org.ballerinax.awslambda.ZipUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Benchmarks the steps of packaging the Lambda zip file, which the plugin runs for every artifact in
+ * {@code codeGenerated}, on jars of different sizes. The CDS training run and the archive dump are left out,
+ * since they run a JVM and depend on a runnable jar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PackagingBenchmark {
+
+    @Param({"1", "16", "64"})
+    public int jarSizeMb;
+
+    private Path workDir;
+    private Path jar;
+    private Path normalizedJar;
+    private Path zip;
+    private SortedMap<String, String> options;
+
+    @Setup(Level.Trial)
+    public void writeJar() throws IOException {
+        this.workDir = Files.createTempDirectory("ballerina-aws-lambda-benchmark-");
+        this.jar = this.workDir.resolve("functions.jar");
+        BenchmarkUtils.writeJar(this.jar, this.jarSizeMb * 1024L * 1024L);
+        this.normalizedJar = this.workDir.resolve("normalized.jar");
+        ZipUtils.normalizeJar(this.jar, this.normalizedJar);
+        this.zip = this.workDir.resolve("aws-ballerina-lambda-functions.zip");
+        this.options = new TreeMap<>();
+        this.options.put("BALLERINA_AWSLAMBDA_CDS", "false");
+    }
+
+    @Benchmark
+    public String hashInputs() throws IOException {
+        return PackagingManifest.hashInputs(this.jar, this.options);
+    }
+
+    @Benchmark
+    public Path normalizeJar() throws IOException {
+        ZipUtils.normalizeJar(this.jar, this.normalizedJar);
+        return this.normalizedJar;
+    }
+
+    @Benchmark
+    public String writeZip() throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(this.zip))) {
+            ZipUtils.writeEntry(zos, this.jar.getFileName().toString(), this.normalizedJar,
+                    Deflater.DEFAULT_COMPRESSION);
+        }
+        return ZipUtils.sha256Base64(this.zip);
+    }
+
+    @Benchmark
+    public String writeStoredZip() throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(this.zip))) {
+            ZipUtils.writeEntry(zos, this.jar.getFileName().toString(), this.normalizedJar,
+                    ZipUtils.STORED_LEVEL);
+        }
+        return ZipUtils.sha256Base64(this.zip);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJar() throws IOException {
+        BenchmarkUtils.deleteDirectory(this.workDir);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.ballerinax.awslambda.benchmarks;
+
+import org.ballerinax.awslambda.AWSLambdaPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.wso2.ballerinalang.compiler.Compiler;
+import org.wso2.ballerinalang.compiler.tree.BLangPackage;
+import org.wso2.ballerinalang.compiler.util.CompilerContext;
+import org.wso2.ballerinalang.compiler.util.CompilerOptions;
+import org.wso2.ballerinalang.compiler.util.diagnotic.BLangDiagnosticLog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.ballerinalang.compiler.CompilerOptionName.COMPILER_PHASE;
+import static org.ballerinalang.compiler.CompilerOptionName.OFFLINE;
+import static org.ballerinalang.compiler.CompilerOptionName.PROJECT_DIR;
+
+/**
+ * Benchmarks {@link AWSLambdaPlugin#process} on synthetic modules with many annotated functions. The cost of
+ * the proxy functions, event parsers and the handler dispatch grows with the number of functions, so the
+ * function count shows how the generation scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PluginProcessBenchmark {
+    private static final String SOURCE_FILE = "functions.bal";
+
+    @Param({"10", "100", "500"})
+    public int functionCount;
+
+    private Path projectDir;
+    private CompilerContext context;
+    private BLangPackage pkg;
+
+    @Setup(Level.Trial)
+    public void writeSources() throws IOException {
+        this.projectDir = Files.createTempDirectory("ballerina-aws-lambda-benchmark-");
+        Files.write(this.projectDir.resolve(SOURCE_FILE), generateSource(this.functionCount)
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Setup(Level.Invocation)
+    public void compile() {
+        // the plugin adds functions to the package, so every invocation needs a freshly compiled one
+        this.context = new CompilerContext();
+        CompilerOptions options = CompilerOptions.getInstance(this.context);
+        options.put(PROJECT_DIR, this.projectDir.toString());
+        options.put(OFFLINE, "true");
+        // the compiler plugins run in the phase after constant propagation
+        options.put(COMPILER_PHASE, "CONSTANT_PROPAGATION");
+        this.pkg = Compiler.getInstance(this.context).compile(SOURCE_FILE);
+        if (this.pkg.getErrorCount() > 0) {
+            throw new IllegalStateException("synthetic module has " + this.pkg.getErrorCount() + " errors");
+        }
+    }
+
+    @Benchmark
+    public BLangPackage process() {
+        AWSLambdaPlugin plugin = new AWSLambdaPlugin();
+        plugin.init(BLangDiagnosticLog.getInstance(this.context));
+        plugin.setCompilerContext(this.context);
+        plugin.process(this.pkg);
+        return this.pkg;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSources() throws IOException {
+        BenchmarkUtils.deleteDirectory(this.projectDir);
+    }
+
+    /**
+     * Generates a module with the given number of functions, which cycle through the event and return types
+     * and the annotation options that select different code generation paths.
+     */
+    static String generateSource(int functionCount) {
+        StringBuilder source = new StringBuilder();
+        source.append("import ballerinax/awslambda;\n\n");
+        source.append("type Order record {\n    string id;\n    int quantity;\n    Item[] items;\n};\n\n");
+        source.append("type Item record {\n    string sku;\n    decimal price;\n};\n\n");
+        for (int i = 0; i < functionCount; i++) {
+            switch (i % 5) {
+                case 0:
+                    source.append("@awslambda:Function\npublic function fn").append(i)
+                            .append("(awslambda:Context ctx, json input) returns json|error {\n")
+                            .append("    return input;\n}\n\n");
+                    break;
+                case 1:
+                    source.append("@awslambda:Function\npublic function fn").append(i)
+                            .append("(awslambda:Context ctx, Order input) returns json|error {\n")
+                            .append("    return input.id;\n}\n\n");
+                    break;
+                case 2:
+                    source.append("@awslambda:Function\npublic function fn").append(i)
+                            .append("(awslambda:Context ctx, string input) returns string|error {\n")
+                            .append("    return input;\n}\n\n");
+                    break;
+                case 3:
+                    source.append("@awslambda:Function {\n    batchItemConcurrency: 4\n}\npublic function fn")
+                            .append(i).append("(awslambda:Context ctx, awslambda:SQSRecord input) returns error? {\n")
+                            .append("}\n\n");
+                    break;
+                default:
+                    source.append("@awslambda:Function {\n    metrics: true\n}\npublic function fn").append(i)
+                            .append("(awslambda:Context ctx, awslambda:S3Event input) returns json|error {\n")
+                            .append("    return input.Records.length();\n}\n\n");
+                    break;
+            }
+        }
+        return source.toString();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test;
+
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test record level handlers of batch events.
+ */
+public class BatchProcessingTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+
+    private RuntimeApiEmulator runtimeApi;
+    private LambdaFunctionProcess function;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.runtimeApi = new RuntimeApiEmulator();
+        this.function = LambdaFunctionProcess.start(srcDirectory.resolve("aws-ballerina-lambda-functions.zip"),
+                "handlers.jar", "processMessage", this.runtimeApi, Collections.emptyMap());
+    }
+
+    @Test
+    public void testPartialBatchFailure() throws InterruptedException, TimeoutException, IOException {
+        List<String> records = new ArrayList<>();
+        records.add(sqsRecord("m1", "ok", "g1"));
+        records.add(sqsRecord("m2", "fail", "g1"));
+        // follows a failed message in the same group, so it is not processed
+        records.add(sqsRecord("m3", "ok", "g1"));
+        records.add(sqsRecord("m4", "ok", "g2"));
+        records.add(sqsRecord("m5", "fail", null));
+        records.add(sqsRecord("m6", "ok", null));
+        RuntimeApiEmulator.InvocationResult result = this.runtimeApi.invoke("{\"Records\":[" +
+                String.join(",", records) + "]}").getResult(INVOCATION_TIMEOUT_MS);
+        Assert.assertFalse(result.isError(), result.getBody() + this.function.getOutput());
+        String body = result.getBody();
+        Assert.assertTrue(body.contains("batchItemFailures"), body);
+        Assert.assertTrue(body.contains("\"m2\""), body);
+        Assert.assertTrue(body.contains("\"m3\""), body);
+        Assert.assertTrue(body.contains("\"m5\""), body);
+        Assert.assertFalse(body.contains("\"m1\""), body);
+        Assert.assertFalse(body.contains("\"m4\""), body);
+        Assert.assertFalse(body.contains("\"m6\""), body);
+    }
+
+    @Test
+    public void testEmptyBatch() throws InterruptedException, TimeoutException {
+        RuntimeApiEmulator.InvocationResult result = this.runtimeApi.invoke("{\"Records\":[]}")
+                .getResult(INVOCATION_TIMEOUT_MS);
+        Assert.assertFalse(result.isError(), result.getBody());
+        Assert.assertTrue(result.getBody().contains("batchItemFailures"), result.getBody());
+    }
+
+    @Test
+    public void testDynamoDBItemOrder() throws InterruptedException, TimeoutException, IOException {
+        List<String> records = new ArrayList<>();
+        records.add(dynamoDBRecord("101", "a", "1", "ok"));
+        records.add(dynamoDBRecord("102", "a", "1", "fail"));
+        // follows a failed record of the same item, so it is not processed
+        records.add(dynamoDBRecord("103", "a", "1", "ok"));
+        // another item with the same partition key is not ordered after the failed record
+        records.add(dynamoDBRecord("104", "a", "2", "ok"));
+        records.add(dynamoDBRecord("105", "a", "2", "ok"));
+        try (RuntimeApiEmulator dynamoDBRuntimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess dynamoDBFunction = LambdaFunctionProcess.start(SOURCE_DIR.resolve("runtime")
+                             .resolve("aws-ballerina-lambda-functions.zip"), "handlers.jar", "processChange",
+                     dynamoDBRuntimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = dynamoDBRuntimeApi.invoke("{\"Records\":[" +
+                    String.join(",", records) + "]}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + dynamoDBFunction.getOutput());
+            String body = result.getBody();
+            Assert.assertTrue(body.contains("\"102\""), body);
+            Assert.assertTrue(body.contains("\"103\""), body);
+            Assert.assertFalse(body.contains("\"101\""), body);
+            Assert.assertFalse(body.contains("\"104\""), body);
+            Assert.assertFalse(body.contains("\"105\""), body);
+        }
+    }
+
+    private static String dynamoDBRecord(String sequenceNumber, String partitionKey, String sortKey,
+                                         String status) {
+        String keys = "{\"pk\":{\"S\":\"" + partitionKey + "\"},\"sk\":{\"N\":\"" + sortKey + "\"}}";
+        return "{\"eventID\":\"" + sequenceNumber + "\",\"eventVersion\":\"1.1\",\"dynamodb\":{\"Keys\":" + keys +
+                ",\"NewImage\":{\"status\":{\"S\":\"" + status + "\"}},\"StreamViewType\":\"NEW_IMAGE\"," +
+                "\"SequenceNumber\":\"" + sequenceNumber + "\",\"SizeBytes\":26},\"awsRegion\":\"us-west-2\"," +
+                "\"eventName\":\"MODIFY\",\"eventSource\":\"aws:dynamodb\",\"eventSourceARN\":" +
+                "\"arn:aws:dynamodb:us-west-2:123456789012:table/items/stream/2020-01-01T00:00:00.000\"}";
+    }
+
+    private static String sqsRecord(String messageId, String body, String groupId) {
+        String attributes = groupId == null ? "{}" : "{\"MessageGroupId\":\"" + groupId + "\"}";
+        return "{\"messageId\":\"" + messageId + "\",\"receiptHandle\":\"handle\",\"body\":\"" + body + "\"," +
+                "\"attributes\":" + attributes + ",\"messageAttributes\":{},\"md5OfBody\":\"md5\"," +
+                "\"eventSource\":\"aws:sqs\",\"eventSourceARN\":\"arn:aws:sqs:us-west-2:123456789012:queue\"," +
+                "\"awsRegion\":\"us-west-2\"}";
+    }
+
+    @AfterClass
+    public void cleanUp() throws IOException, InterruptedException {
+        if (this.function != null) {
+            this.function.close();
+        }
+        if (this.runtimeApi != null) {
+            this.runtimeApi.close();
+        }
+    }
+}
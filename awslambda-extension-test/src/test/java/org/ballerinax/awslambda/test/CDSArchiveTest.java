@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Test the AppCDS archive packaged with the awslambda deployment artifacts.
+ */
+public class CDSArchiveTest extends BaseTest {
+    private static final Log log = LogFactory.getLog(CDSArchiveTest.class);
+    private static final int STARTUP_RUNS = 5;
+    // loose, since the test machine is shared, but an archive which slows the startup down fails the test
+    private static final double MAX_STARTUP_RATIO = 1.25;
+    private static final Map<String, String> TRAINING_ENV =
+            Collections.singletonMap("BALLERINA_AWSLAMBDA_TRAINING", "true");
+
+    private Path extractDir;
+    private String archiveName;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        // the AppCDS archive is opt-in
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(SOURCE_DIR.resolve("deployment"), "functions.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "true"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.extractDir = Files.createTempDirectory("ballerina-aws-lambda-cds-");
+        TestUtils.extractZip(SOURCE_DIR.resolve("deployment").resolve("aws-ballerina-lambda-functions.zip"),
+                this.extractDir);
+        // the archive is looked up by the SHA-256 of the jar, which the function zip carries
+        String jarSha256 = new String(Files.readAllBytes(this.extractDir.resolve("functions.sha256")),
+                StandardCharsets.UTF_8).trim();
+        this.archiveName = "functions-" + jarSha256 + ".jsa";
+        Assert.assertFalse(Files.exists(this.extractDir.resolve(this.archiveName)));
+        TestUtils.extractZip(SOURCE_DIR.resolve("deployment").resolve("aws-ballerina-lambda-functions-cds.zip"),
+                this.extractDir);
+    }
+
+    @Test
+    public void testArchivePackaged() throws IOException, NoSuchAlgorithmException {
+        // the archive is packaged as a separate layer, outside of the reproducible function zip
+        Assert.assertTrue(Files.exists(this.extractDir.resolve("functions.jar")));
+        Assert.assertTrue(Files.exists(this.extractDir.resolve(this.archiveName)));
+        // a rebuilt jar of the same size changes the name, so an archive of another build is never picked up
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(
+                Files.readAllBytes(this.extractDir.resolve("functions.jar")))) {
+            hex.append(String.format("%02x", b));
+        }
+        Assert.assertEquals(this.archiveName, "functions-" + hex + ".jsa");
+    }
+
+    @Test(dependsOnMethods = "testArchivePackaged")
+    public void testArchiveUsable() throws IOException, InterruptedException {
+        // -Xshare:on fails instead of silently falling back if the archive does not match the jar
+        ProcessOutput processOutput = TestUtils.runJava(this.extractDir, Arrays.asList("-Xshare:on",
+                "-XX:SharedArchiveFile=" + this.archiveName, "-Xlog:class+load=info", "-jar", "functions.jar"),
+                TRAINING_ENV);
+        Assert.assertEquals(processOutput.getExitCode(), 0, processOutput.getStdOutput());
+        // the classes of the application jar, not only the JDK classes of the default archive, are mapped
+        Assert.assertTrue(Pattern.compile("ballerinax[./]awslambda\\S* source: shared objects file")
+                .matcher(processOutput.getStdOutput()).find(), processOutput.getStdOutput());
+    }
+
+    @Test(dependsOnMethods = "testArchiveUsable")
+    public void testStartupTime() throws IOException, InterruptedException {
+        long withoutArchive = this.measureStartup(Arrays.asList("-Xshare:auto", "-jar", "functions.jar"));
+        long withArchive = this.measureStartup(Arrays.asList("-Xshare:auto",
+                "-XX:SharedArchiveFile=" + this.archiveName, "-jar", "functions.jar"));
+        log.info("JVM startup time without AppCDS archive: " + withoutArchive + "ms, with AppCDS archive: " +
+                withArchive + "ms");
+        Assert.assertTrue(withArchive <= withoutArchive * MAX_STARTUP_RATIO, "startup time with the archive " +
+                withArchive + "ms, without " + withoutArchive + "ms");
+    }
+
+    private long measureStartup(List<String> args) throws IOException, InterruptedException {
+        List<Long> times = new ArrayList<>();
+        for (int i = 0; i < STARTUP_RUNS; i++) {
+            long start = System.nanoTime();
+            ProcessOutput processOutput = TestUtils.runJava(this.extractDir, args, TRAINING_ENV);
+            times.add((System.nanoTime() - start) / 1_000_000);
+            Assert.assertEquals(processOutput.getExitCode(), 0, processOutput.getStdOutput());
+        }
+        // the first run warms up the file system cache, use the median of the rest
+        times.remove(0);
+        Collections.sort(times);
+        return times.get(times.size() / 2);
+    }
+
+    @AfterClass
+    public void cleanUp() throws IOException {
+        TestUtils.deleteDirectory(this.extractDir);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.ballerinax.awslambda.test;
+
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test the checkpoint and restore lifecycle of function instances initialised for SnapStart, with a simulated
+ * checkpoint and restore sequence of the local Runtime API.
+ */
+public class CheckpointRestoreTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+
+    private Path zipFile;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.zipFile = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+    }
+
+    @Test
+    public void testPrimedBeforeCheckpoint() throws IOException, InterruptedException, TimeoutException {
+        Map<String, String> env = new HashMap<>();
+        env.put("AWS_LAMBDA_INITIALIZATION_TYPE", "snap-start");
+        env.put("BALLERINA_AWSLAMBDA_PRIMING_INVOCATIONS", "20");
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "snapshotState", runtimeApi, env)) {
+            int checkpointPort = runtimeApi.awaitCheckpoint(INVOCATION_TIMEOUT_MS);
+            RuntimeApiEmulator.Invocation invocation = runtimeApi.invoke("{}");
+            // no events are polled until the function instance is restored
+            Assert.expectThrows(TimeoutException.class, () -> invocation.getResult(1000));
+            runtimeApi.restore();
+            RuntimeApiEmulator.InvocationResult result = invocation.getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getBody().replace(" ", ""),
+                    "{\"primedInvocations\":20,\"checkpointed\":true,\"restored\":true}");
+            // the runtime API client reconnects after the restore
+            Assert.assertNotEquals(invocation.getPolledPort(), checkpointPort);
+        }
+    }
+
+    @Test
+    public void testAfterRestoreErrorReported() throws IOException, InterruptedException, TimeoutException {
+        Map<String, String> env = new HashMap<>();
+        env.put("AWS_LAMBDA_INITIALIZATION_TYPE", "snap-start");
+        env.put("FAIL_RESTORE", "true");
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "snapshotState", runtimeApi, env)) {
+            runtimeApi.awaitCheckpoint(INVOCATION_TIMEOUT_MS);
+            runtimeApi.restore();
+            RuntimeApiEmulator.InvocationResult restoreError = runtimeApi.getRestoreError(INVOCATION_TIMEOUT_MS);
+            Assert.assertEquals(restoreError.getErrorType(), "Runtime.AfterRestoreError");
+            Assert.assertTrue(restoreError.getBody().contains("After restore function afterRestore failed"),
+                    restoreError.getBody());
+            // the function instance exits instead of polling for events
+            Assert.assertTrue(function.waitForExit(INVOCATION_TIMEOUT_MS), function.getOutput());
+        }
+    }
+
+    @Test
+    public void testOnDemandInitialization() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "snapshotState", runtimeApi, Collections.emptyMap())) {
+            // the handler is neither primed nor checkpointed
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getBody().replace(" ", ""),
+                    "{\"primedInvocations\":0,\"checkpointed\":false,\"restored\":false}");
+        }
+    }
+}
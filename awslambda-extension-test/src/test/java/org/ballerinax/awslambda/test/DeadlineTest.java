@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.ballerinax.awslambda.test;
+
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test the deadline watchdog of the handler invocations.
+ */
+public class DeadlineTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+    private static final long SHORT_DEADLINE_MS = 2000;
+    private static final long LONG_DEADLINE_MS = 15 * 60 * 1000;
+    private static final int QUICK_INVOCATIONS = 1000;
+
+    private Path zipFile;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.zipFile = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+    }
+
+    @Test
+    public void testTimeoutReportedByRuntime() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "sleepFor", runtimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{\"sleepMs\":60000}",
+                    SHORT_DEADLINE_MS).getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertTrue(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getErrorType(), "Runtime.HandlerTimeout");
+            Assert.assertTrue(result.getProcessingNanos() < SHORT_DEADLINE_MS * 1_000_000L,
+                    "timeout reported after " + result.getProcessingNanos() + "ns");
+            // the same function instance serves the next invocation
+            result = runtimeApi.invoke("{\"sleepMs\":0}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getBody(), "\"done\"");
+        }
+    }
+
+    @Test
+    public void testWriteAfterTimeout() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "writeAfterDeadline", runtimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{}", SHORT_DEADLINE_MS)
+                    .getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertTrue(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getErrorType(), "Runtime.HandlerTimeout");
+            Assert.assertEquals(result.getBody(), "before\n");
+            // the next invocation reports what happened to the writes of the timed out handler
+            result = runtimeApi.invoke("{\"report\":true}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertTrue(result.getBody().contains("has been cancelled"), result.getBody());
+            Assert.assertTrue(function.getOutput().contains("is dropped"), function.getOutput());
+        }
+    }
+
+    @Test
+    public void testTimersOfQuickInvocationsEnd() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "sleepFor", runtimeApi, Collections.emptyMap())) {
+            for (int i = 0; i < QUICK_INVOCATIONS; i++) {
+                RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{\"sleepMs\":0}", LONG_DEADLINE_MS)
+                        .getResult(INVOCATION_TIMEOUT_MS);
+                Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            }
+            // the timer strands of the completed invocations do not sleep until their deadlines
+            long strands = function.countLiveInstances("Strand");
+            Assert.assertTrue(strands > 0 && strands < QUICK_INVOCATIONS / 10, strands + " live strands");
+        }
+    }
+
+    @Test
+    public void testCooperativeCancellation() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "awaitCancellation", runtimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{}", SHORT_DEADLINE_MS)
+                    .getResult(INVOCATION_TIMEOUT_MS);
+            // the handler returns its own result when it is cancelled
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertTrue(result.getBody().contains("\"cancelled\""), result.getBody());
+        }
+    }
+}
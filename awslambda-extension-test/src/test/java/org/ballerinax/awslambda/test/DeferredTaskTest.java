@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.ballerinax.awslambda.test;
+
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test the tasks deferred until the response has been sent.
+ */
+public class DeferredTaskTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+    private static final long TASK_DELAY_MS = 2000;
+
+    private Path zipFile;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.zipFile = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+    }
+
+    @Test
+    public void testResponseBeforeDeferredTasks() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "deferWork", runtimeApi, Collections.singletonMap("BALLERINA_AWSLAMBDA_DEFERRED_BUDGET_MS",
+                             String.valueOf(TASK_DELAY_MS * 2)))) {
+            String event = "{\"delayMs\":" + TASK_DELAY_MS + "}";
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke(event).getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getBody(), "\"accepted\"");
+            Assert.assertTrue(result.getProcessingNanos() < TimeUnit.MILLISECONDS.toNanos(TASK_DELAY_MS),
+                    "response sent after " + result.getProcessingNanos() + "ns");
+            // the next event is only polled once the deferred task of the first one has finished
+            result = runtimeApi.invoke("{\"delayMs\":0}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertTrue(result.getLatencyNanos() > TimeUnit.MILLISECONDS.toNanos(TASK_DELAY_MS / 2),
+                    "next event polled after " + result.getLatencyNanos() + "ns");
+        }
+    }
+
+    @Test
+    public void testDeferredTaskBudget() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "deferWork", runtimeApi, Collections.singletonMap("BALLERINA_AWSLAMBDA_DEFERRED_BUDGET_MS",
+                             "200"))) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{\"delayMs\":60000}")
+                    .getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            // the task which overran its budget does not hold up the next event
+            result = runtimeApi.invoke("{\"delayMs\":0}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertTrue(result.getLatencyNanos() < TimeUnit.MILLISECONDS.toNanos(TASK_DELAY_MS),
+                    "next event polled after " + result.getLatencyNanos() + "ns");
+        }
+    }
+}
@@ -18,7 +18,9 @@
 package org.ballerinax.awslambda.test;
 
 import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
 import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
 import org.ballerinax.awslambda.test.utils.TestUtils;
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
@@ -27,16 +29,26 @@ import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * Test creating awslambda deployment artifacts.
  */
 public class DeploymentTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+
     private Path eventJson;
 
     @BeforeClass
@@ -50,6 +62,9 @@ public class DeploymentTest extends BaseTest {
         ProcessOutput processOutput = TestUtils.compileBallerinaFile(SOURCE_DIR.resolve("deployment"), "functions.bal");
         Assert.assertEquals(processOutput.getExitCode(), 0);
         Assert.assertTrue(processOutput.getStdOutput().contains("@awslambda"));
+        // the AppCDS training run executes the program, so it only runs when it is enabled
+        Path cdsLayerZip = SOURCE_DIR.resolve("deployment").resolve("aws-ballerina-lambda-functions-cds.zip");
+        Assert.assertFalse(Files.exists(cdsLayerZip));
 
         // Check if jar is in .zip
         Path zipFilePath = SOURCE_DIR.resolve("deployment").resolve("aws-ballerina-lambda-functions.zip");
@@ -58,6 +73,110 @@ public class DeploymentTest extends BaseTest {
         try (FileSystem zipfs = FileSystems.newFileSystem(uri, new HashMap<>())) {
             Path jarFile = zipfs.getPath("/functions.jar");
             Assert.assertTrue(Files.exists(jarFile));
+            Assert.assertFalse(Files.exists(zipfs.getPath("/functions.jsa")));
+            Assert.assertFalse(Files.exists(zipfs.getPath("/functions.sha256")));
+            // the bootstrap reads the JVM profiles of the annotations from the zip
+            Path profiles = zipfs.getPath("/functions.profiles");
+            Assert.assertEquals(new String(Files.readAllBytes(profiles), StandardCharsets.UTF_8), "uuid=small\n");
+        }
+    }
+
+    @Test(dependsOnMethods = "testAWSLambdaDeployment")
+    public void testShrunkDeployment() throws IOException, InterruptedException, TimeoutException {
+        Path srcDirectory = SOURCE_DIR.resolve("deployment");
+        Path originalJar = srcDirectory.resolve("functions.jar");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "functions.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_SHRINK", "true"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        Assert.assertTrue(processOutput.getStdOutput().contains("Shrunk executable jar"));
+
+        Path zipFilePath = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+        Path extractDir = this.eventJson.getParent().resolve("shrunk");
+        TestUtils.extractZip(zipFilePath, extractDir);
+        Path shrunkJar = extractDir.resolve("functions.jar");
+        Assert.assertTrue(Files.size(shrunkJar) < Files.size(originalJar));
+        // the shrunk jar still runs the handlers, including the native code of the modules they call
+        String event = "{\"message\":\"Hello\"}";
+        Assert.assertEquals(this.invoke(zipFilePath, "echo", event), event);
+        Assert.assertTrue(this.invoke(zipFilePath, "uuid", event).matches("\"[0-9a-f-]{36}\""));
+    }
+
+    @Test(dependsOnMethods = "testShrunkDeployment")
+    public void testReproducibleDeployment() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("deployment");
+        Path zipFilePath = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+        // with the AppCDS archive, which is packaged in a separate layer zip
+        Map<String, String> env = Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "true");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "functions.bal", env);
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        Assert.assertTrue(Files.exists(srcDirectory.resolve("aws-ballerina-lambda-functions-cds.zip")));
+        byte[] firstZip = Files.readAllBytes(zipFilePath);
+
+        // unchanged inputs reuse the existing zip
+        processOutput = TestUtils.compileBallerinaFile(srcDirectory, "functions.bal", env);
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        Assert.assertTrue(processOutput.getStdOutput().contains("aws-ballerina-lambda-functions.zip is up to date"));
+
+        // repackaging produces the same zip
+        Files.delete(zipFilePath);
+        processOutput = TestUtils.compileBallerinaFile(srcDirectory, "functions.bal", env);
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        Assert.assertEquals(Files.readAllBytes(zipFilePath), firstZip);
+    }
+
+    @Test(dependsOnMethods = "testReproducibleDeployment")
+    public void testPerFunctionDeployment() throws IOException, InterruptedException, TimeoutException {
+        Path srcDirectory = SOURCE_DIR.resolve("deployment");
+        Map<String, String> env = new HashMap<>();
+        env.put("BALLERINA_AWSLAMBDA_ARTIFACTS", "function");
+        env.put("BALLERINA_AWSLAMBDA_CDS", "false");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "functions.bal", env);
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        Assert.assertTrue(processOutput.getStdOutput().contains("aws-ballerina-lambda-echo.zip"));
+
+        Path zipFilePath = srcDirectory.resolve("aws-ballerina-lambda-echo.zip");
+        Assert.assertTrue(Files.exists(zipFilePath));
+        Assert.assertTrue(Files.exists(srcDirectory.resolve("aws-ballerina-lambda-echo.zip.sha256")));
+        Assert.assertTrue(Files.exists(srcDirectory.resolve("aws-ballerina-lambda-uuid.zip")));
+        // each zip dispatches to its own handler
+        String event = "{\"message\":\"Hello\"}";
+        Assert.assertEquals(this.invoke(zipFilePath, "echo", event), event);
+        Assert.assertTrue(this.invoke(srcDirectory.resolve("aws-ballerina-lambda-uuid.zip"), "uuid", event)
+                .matches("\"[0-9a-f-]{36}\""));
+        Assert.assertEquals(this.invoke(srcDirectory.resolve("aws-ballerina-lambda-rawEcho.zip"), "rawEcho", "raw"),
+                "raw");
+    }
+
+    @Test
+    public void testPerFunctionProjectDeployment() throws IOException, InterruptedException, TimeoutException {
+        Path projectDirectory = SOURCE_DIR.resolve("per-function");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(projectDirectory, "functions",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_ARTIFACTS", "function"));
+        Assert.assertEquals(processOutput.getExitCode(), 0, processOutput.getErrOutput());
+        Path binDirectory = projectDirectory.resolve("target").resolve("bin");
+        Path echoZip = binDirectory.resolve("aws-ballerina-lambda-echo.zip");
+        Path uuidZip = binDirectory.resolve("aws-ballerina-lambda-uuid.zip");
+
+        // the handlers are declared in separate source files, so the zip of each leaves out the class of the other
+        List<String> echoClasses = this.getJarEntries(echoZip);
+        Assert.assertTrue(echoClasses.stream().anyMatch(name -> name.endsWith("/echo.class")), echoClasses.toString());
+        Assert.assertTrue(echoClasses.stream().noneMatch(name -> name.endsWith("/uuid.class")),
+                echoClasses.toString());
+        List<String> uuidClasses = this.getJarEntries(uuidZip);
+        Assert.assertTrue(uuidClasses.stream().anyMatch(name -> name.endsWith("/uuid.class")), uuidClasses.toString());
+        Assert.assertTrue(uuidClasses.stream().noneMatch(name -> name.endsWith("/echo.class")),
+                uuidClasses.toString());
+
+        String event = "{\"message\":\"Hello\"}";
+        Assert.assertEquals(this.invoke(echoZip, "echo", event), event);
+        Assert.assertTrue(this.invoke(uuidZip, "uuid", event).matches("\"[0-9a-f-]{36}\""));
+    }
+
+    private List<String> getJarEntries(Path zipFilePath) throws IOException {
+        Path extractDir = Files.createTempDirectory(this.eventJson.getParent(), "function-");
+        TestUtils.extractZip(zipFilePath, extractDir);
+        try (ZipFile jar = new ZipFile(extractDir.resolve("functions.jar").toFile())) {
+            return jar.stream().map(ZipEntry::getName).collect(Collectors.toList());
         }
     }
 
@@ -72,9 +191,21 @@ public class DeploymentTest extends BaseTest {
 //        Assert.assertTrue(processOutput.getStdOutput().contains(echoContent));
 //    }
 
+    private String invoke(Path zipFilePath, String handler, String event)
+            throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(zipFilePath, "functions.jar", handler,
+                     runtimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke(event).getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            return result.getBody().replace(" ", "");
+        }
+    }
+
     @AfterClass
     public void cleanUp() throws IOException {
         TestUtils.deleteDirectory(this.eventJson.getParent());
+        TestUtils.deleteDirectory(SOURCE_DIR.resolve("per-function").resolve("target"));
     }
 }
 
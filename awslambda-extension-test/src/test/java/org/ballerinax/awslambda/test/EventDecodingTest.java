@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test;
+
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test the lazily decoded payloads of Kinesis and Kafka events.
+ */
+public class EventDecodingTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+
+    private Path zipFile;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.zipFile = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+    }
+
+    @Test
+    public void testKinesisDataDecodedOnAccess() throws IOException, InterruptedException, TimeoutException {
+        // the skipped record does not contain valid base64 data, so decoding it would fail the invocation
+        String event = "{\"Records\":[" + kinesisRecord("skipped", "not base64!") + "," +
+                kinesisRecord("selected", "SGVsbG8=") + "]}";
+        // a Runtime API per function, so a stopped function does not leave a pending next request behind
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "selectKinesisData", runtimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke(event)
+                    .getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getBody().replace(" ", ""), "[\"Hello\"]");
+        }
+    }
+
+    @Test
+    public void testSpoofedDecodedData() throws IOException, InterruptedException, TimeoutException {
+        // a field named like the cache of the decoded data is an ordinary field of the record, not decoded data
+        String event = "{\"Records\":[" + kinesisRecord("selected", "SGVsbG8=")
+                .replace("\"data\":", "\"decodedData\":[66,121,101],\"data\":") + "]}";
+        // a Runtime API per function, so a stopped function does not leave a pending next request behind
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "selectKinesisData", runtimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke(event)
+                    .getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getBody().replace(" ", ""), "[\"Hello\"]");
+        }
+    }
+
+    @Test
+    public void testKafkaValues() throws IOException, InterruptedException, TimeoutException {
+        String event = "{\"eventSource\":\"SelfManagedKafka\",\"bootstrapServers\":\"localhost:9092\"," +
+                "\"records\":{\"topic-0\":[" + kafkaRecord(0, "SGVsbG8=") + "," + kafkaRecord(1, null) + "]}}";
+        // a Runtime API per function, so a stopped function does not leave a pending next request behind
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "readKafkaValues", runtimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke(event)
+                    .getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getBody().replace(" ", ""), "[\"Hello\"]");
+        }
+    }
+
+    private static String kinesisRecord(String partitionKey, String data) {
+        return "{\"kinesis\":{\"kinesisSchemaVersion\":\"1.0\",\"partitionKey\":\"" + partitionKey + "\"," +
+                "\"sequenceNumber\":\"1\",\"data\":\"" + data + "\",\"approximateArrivalTimestamp\":1545084650.987}," +
+                "\"eventSource\":\"aws:kinesis\",\"eventVersion\":\"1.0\",\"eventID\":\"shardId-000000000006:1\"," +
+                "\"eventName\":\"aws:kinesis:record\",\"invokeIdentityArn\":\"arn:aws:iam::123456789012:role/test\"," +
+                "\"awsRegion\":\"us-west-2\"," +
+                "\"eventSourceARN\":\"arn:aws:kinesis:us-west-2:123456789012:stream/test\"}";
+    }
+
+    private static String kafkaRecord(int offset, String value) {
+        return "{\"topic\":\"topic\",\"partition\":0,\"offset\":" + offset + ",\"timestamp\":1545084650987," +
+                "\"timestampType\":\"CREATE_TIME\"," + (value == null ? "" : "\"value\":\"" + value + "\",") +
+                "\"headers\":[]}";
+    }
+}
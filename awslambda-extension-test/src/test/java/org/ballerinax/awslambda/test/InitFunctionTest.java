@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.ballerinax.awslambda.test;
+
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test the @awslambda:Init functions called in the init phase.
+ */
+public class InitFunctionTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+
+    private Path zipFile;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.zipFile = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+    }
+
+    @Test
+    public void testInitBeforeFirstEvent() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "initState", runtimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getBody().replace(" ", ""), "{\"initialized\":true}");
+        }
+    }
+
+    @Test
+    public void testInitErrorReported() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "initState", runtimeApi, Collections.singletonMap("FAIL_INIT", "true"))) {
+            RuntimeApiEmulator.InvocationResult initError = runtimeApi.getInitError(INVOCATION_TIMEOUT_MS);
+            Assert.assertEquals(initError.getErrorType(), "Runtime.InitError");
+            Assert.assertTrue(initError.getBody().contains("Init function setup failed"), initError.getBody());
+            // the function instance exits instead of polling for events
+            Assert.assertTrue(function.waitForExit(INVOCATION_TIMEOUT_MS), function.getOutput());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.ballerinax.awslambda.test;
+
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test the invocation stage metrics emitted in the CloudWatch Embedded Metric Format.
+ */
+public class InvocationMetricsTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+
+    private Path zipFile;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.zipFile = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+    }
+
+    @Test
+    public void testMetricsEmittedPerBatch() throws IOException, InterruptedException, TimeoutException {
+        Map<String, String> env = new HashMap<>();
+        env.put("BALLERINA_AWSLAMBDA_METRICS_BATCH_SIZE", "3");
+        env.put("AWS_LAMBDA_FUNCTION_NAME", "measured-echo");
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "measuredEcho", runtimeApi, env)) {
+            for (int i = 0; i < 2; i++) {
+                RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{\"i\":" + i + "}")
+                        .getResult(INVOCATION_TIMEOUT_MS);
+                Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            }
+            // the metrics are emitted once per batch, not per invocation
+            Assert.assertFalse(function.getOutput().contains("CloudWatchMetrics"), function.getOutput());
+            runtimeApi.invoke("{\"i\":2}").getResult(INVOCATION_TIMEOUT_MS);
+            String line = this.waitForMetrics(function).replace(" ", "");
+            Assert.assertTrue(line.contains("\"Namespace\":\"Ballerina/Lambda\""), line);
+            Assert.assertTrue(line.contains("\"FunctionName\":\"measured-echo\""), line);
+            Assert.assertTrue(line.contains("\"Invocations\":3"), line);
+            for (String stage : Arrays.asList("EventParseLatency", "HandlerLatency", "ResponseSerializeLatency",
+                    "ResponsePostLatency")) {
+                Assert.assertTrue(line.contains("\"" + stage + "\":{\"Values\":["), stage + " in " + line);
+            }
+        }
+    }
+
+    @Test
+    public void testSingleInvocationWindowEmittedOnShutdown() throws IOException, InterruptedException,
+            TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "measuredEcho", runtimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertFalse(function.getOutput().contains("CloudWatchMetrics"), function.getOutput());
+            // neither the batch size nor the interval is reached, the window is emitted when the instance stops
+            Assert.assertTrue(function.terminate(INVOCATION_TIMEOUT_MS), function.getOutput());
+            String line = this.waitForMetrics(function).replace(" ", "");
+            Assert.assertTrue(line.contains("\"Invocations\":1"), line);
+        }
+    }
+
+    @Test
+    public void testIdleWindowEmitted() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "measuredEcho", runtimeApi, Collections.singletonMap("BALLERINA_AWSLAMBDA_METRICS_INTERVAL_MS",
+                             "500"))) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Thread.sleep(1000);
+            // the window of the first invocation ended while waiting, it is emitted when the next event arrives
+            result = runtimeApi.invoke("{}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            String line = this.waitForMetrics(function).replace(" ", "");
+            Assert.assertTrue(line.contains("\"Invocations\":1"), line);
+        }
+    }
+
+    @Test
+    public void testMetricsDisabledByDefault() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "initState", runtimeApi, Collections.singletonMap("BALLERINA_AWSLAMBDA_METRICS_BATCH_SIZE",
+                             "1"))) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            runtimeApi.invoke("{}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(function.getOutput().contains("CloudWatchMetrics"), function.getOutput());
+        }
+    }
+
+    private String waitForMetrics(LambdaFunctionProcess function) throws IOException, InterruptedException {
+        // the metrics are logged after the response is sent
+        long deadline = System.currentTimeMillis() + INVOCATION_TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            for (String line : function.getOutput().split("\n")) {
+                if (line.contains("CloudWatchMetrics")) {
+                    return line;
+                }
+            }
+            Thread.sleep(100);
+        }
+        Assert.fail("metrics were not emitted: " + function.getOutput());
+        return null;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.ballerinax.awslambda.test;
+
+import org.apache.commons.io.FilenameUtils;
+import org.ballerinax.awslambda.JreImageBuilder;
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test running functions through the layer bootstrap on a minimal runtime image linked for their jar.
+ */
+public class JreImageTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+
+    private Path zipFile;
+    private Path workDir;
+    private Path jreImage;
+    private Set<String> modules;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path jdkHome = Paths.get(System.getProperty("java.home"));
+        if (!Files.isDirectory(jdkHome.resolve("jmods"))) {
+            throw new SkipException("the JDK running the tests does not have jmods to link: " + jdkHome);
+        }
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.zipFile = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+        this.workDir = Files.createTempDirectory("ballerina-aws-lambda-jre-");
+        TestUtils.extractZip(this.zipFile, this.workDir.resolve("function"));
+        this.jreImage = this.workDir.resolve("jre");
+        this.modules = new JreImageBuilder(jdkHome, null).build(
+                Collections.singletonList(this.workDir.resolve("function").resolve("handlers.jar")),
+                Collections.emptyList(), this.jreImage);
+    }
+
+    @Test
+    public void testJreImageIsMinimal() throws IOException {
+        Assert.assertTrue(this.modules.contains("java.base"));
+        Assert.assertTrue(this.modules.contains("jdk.crypto.ec"));
+        List<String> jdkModules = getReleaseModules(Paths.get(System.getProperty("java.home")));
+        List<String> jreModules = getReleaseModules(this.jreImage);
+        Assert.assertEquals(jreModules.size(), this.modules.size(), jreModules.toString());
+        Assert.assertTrue(jreModules.size() < jdkModules.size(), jreModules.toString());
+        // header files, man pages and the development tools are not linked
+        Assert.assertFalse(Files.exists(this.jreImage.resolve("include")));
+        Assert.assertFalse(Files.exists(this.jreImage.resolve("bin").resolve("javac")));
+    }
+
+    @DataProvider(name = "handlers")
+    public Object[][] handlers() {
+        return new Object[][] {
+                { "initState", "{}", "{\"initialized\":true}" },
+                { "measuredEcho", "{\"message\":\"hello\"}", "{\"message\":\"hello\"}" }
+        };
+    }
+
+    @Test(dataProvider = "handlers")
+    public void testHandlerRunsOnJreImage(String handler, String event, String expectedResponse)
+            throws IOException, InterruptedException, TimeoutException {
+        Path bootstrap = Paths.get(FilenameUtils.separatorsToSystem(System.getProperty("ballerinaLayer")));
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.startWithBootstrap(this.zipFile,
+                     "handlers.jar", handler, runtimeApi,
+                     Collections.singletonMap("BALLERINA_AWSLAMBDA_JAVA_HOME", this.jreImage.toString()),
+                     bootstrap)) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke(event).getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getBody().replace(" ", ""), expectedResponse);
+        }
+    }
+
+    private static List<String> getReleaseModules(Path javaHome) throws IOException {
+        for (String line : Files.readAllLines(javaHome.resolve("release"), StandardCharsets.UTF_8)) {
+            if (line.startsWith("MODULES=")) {
+                return Arrays.asList(line.substring("MODULES=".length()).replace("\"", "").trim().split(" "));
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    @AfterClass
+    public void cleanUp() throws IOException {
+        if (this.workDir != null) {
+            TestUtils.deleteDirectory(this.workDir);
+        }
+    }
+}
@@ -20,22 +20,46 @@ package org.ballerinax.awslambda.test;
 
 import org.apache.commons.io.FilenameUtils;
 import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.TestUtils;
 import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.bind.DatatypeConverter;
 
 /**
- * Validate that the layer implementation is the same that is used in tests.
+ * Validate that the layer implementation is the same that is used in tests, and the JVM profiles of its bootstrap.
  */
 public class LayerValidationTest extends BaseTest {
+    private Path workDir;
+
+    @BeforeClass
+    public void setup() throws IOException {
+        this.workDir = Files.createTempDirectory("ballerina-aws-lambda-layer-");
+        // a fake JDK which prints the options the bootstrap starts it with
+        Path java = Files.createDirectories(this.workDir.resolve("jdk").resolve("bin")).resolve("java");
+        Files.write(java, Arrays.asList("#!/bin/sh", "echo \"JAVA_OPTS $*\"",
+                "echo \"BALLERINA_MAX_POOL_SIZE $BALLERINA_MAX_POOL_SIZE\""), StandardCharsets.UTF_8);
+        Files.setPosixFilePermissions(java, PosixFilePermissions.fromString("rwxr-xr-x"));
+        Path taskRoot = Files.createDirectories(this.workDir.resolve("task"));
+        Files.write(taskRoot.resolve("functions.profiles"), Arrays.asList("annotated=large"),
+                StandardCharsets.UTF_8);
+    }
 
     public static String getMD5(Path filePath) throws NoSuchAlgorithmException, IOException {
         MessageDigest md = MessageDigest.getInstance("MD5");
@@ -52,4 +76,86 @@ public class LayerValidationTest extends BaseTest {
                 .resolve("bootstrap"));
         Assert.assertEquals(ballerinaLayerMD5, testLayerMD5, "Ballerina layers are different in tests.");
     }
+
+    @DataProvider(name = "jvmProfiles")
+    public Object[][] jvmProfiles() {
+        return new Object[][] {
+                // memory size, handler, profile env, expected options, expected pool size
+                { "128", "echo", null, "-Xms64m -Xmx64m -XX:ActiveProcessorCount=1 -XX:-UsePerfData " +
+                        "-XX:+UseSerialGC -XX:TieredStopAtLevel=1 -jar functions.jar", "2" },
+                { "1024", "echo", null, "-Xms768m -Xmx768m -XX:ActiveProcessorCount=1 -XX:-UsePerfData " +
+                        "-XX:+UseSerialGC -jar functions.jar", "2" },
+                { "2048", "echo", null, "-Xms1536m -Xmx1536m -XX:ActiveProcessorCount=2 -XX:-UsePerfData " +
+                        "-XX:+UseSerialGC -jar functions.jar", "4" },
+                { "10240", "echo", null, "-Xms7680m -Xmx7680m -XX:ActiveProcessorCount=6 -XX:-UsePerfData " +
+                        "-XX:+UseParallelGC -jar functions.jar", "12" },
+                // the profile of the annotation is used instead of the one of the memory size
+                { "512", "annotated", null, "-Xms384m -Xmx384m -XX:ActiveProcessorCount=1 -XX:-UsePerfData " +
+                        "-XX:+UseParallelGC -jar functions.jar", "2" },
+                // the environment variable overrides the annotation
+                { "512", "annotated", "medium", "-Xms384m -Xmx384m -XX:ActiveProcessorCount=1 " +
+                        "-XX:-UsePerfData -XX:+UseSerialGC -jar functions.jar", "2" },
+                { "512", "echo", "none", "-jar functions.jar", "" },
+                // outside of AWS Lambda the JVM defaults are used
+                { null, "echo", null, "-jar functions.jar", "" }
+        };
+    }
+
+    @Test(dataProvider = "jvmProfiles")
+    public void testJvmProfile(String memorySize, String handler, String profile, String expectedOptions,
+                               String expectedPoolSize) throws IOException, InterruptedException {
+        Map<String, String> env = new HashMap<>();
+        if (memorySize != null) {
+            env.put("AWS_LAMBDA_FUNCTION_MEMORY_SIZE", memorySize);
+        }
+        if (profile != null) {
+            env.put("BALLERINA_AWSLAMBDA_JVM_PROFILE", profile);
+        }
+        String output = this.runBootstrap(handler, env);
+        Assert.assertTrue(output.contains("JAVA_OPTS " + expectedOptions + "\n"), output);
+        Assert.assertTrue(output.contains("BALLERINA_MAX_POOL_SIZE " + expectedPoolSize + "\n"), output);
+    }
+
+    @Test
+    public void testJavaOptsOverrideProfile() throws IOException, InterruptedException {
+        Map<String, String> env = new HashMap<>();
+        env.put("AWS_LAMBDA_FUNCTION_MEMORY_SIZE", "128");
+        env.put("BALLERINA_AWSLAMBDA_JAVA_OPTS", "-Xmx96m");
+        env.put("BALLERINA_MAX_POOL_SIZE", "8");
+        String output = this.runBootstrap("echo", env);
+        Assert.assertTrue(output.contains("-XX:TieredStopAtLevel=1 -Xmx96m -jar functions.jar\n"), output);
+        Assert.assertTrue(output.contains("BALLERINA_MAX_POOL_SIZE 8\n"), output);
+    }
+
+    @Test
+    public void testInvalidJvmProfile() throws IOException, InterruptedException {
+        Map<String, String> env = new HashMap<>();
+        env.put("AWS_LAMBDA_FUNCTION_MEMORY_SIZE", "128");
+        env.put("BALLERINA_AWSLAMBDA_JVM_PROFILE", "tiny");
+        String output = this.runBootstrap("echo", env);
+        Assert.assertTrue(output.contains("Unknown JVM profile 'tiny'"), output);
+        Assert.assertFalse(output.contains("JAVA_OPTS"), output);
+    }
+
+    private String runBootstrap(String handler, Map<String, String> env) throws IOException, InterruptedException {
+        Path bootstrap = SOURCE_DIR.resolve("layer-pkg").resolve("ballerina-2-d475e820be").resolve("bootstrap");
+        ProcessBuilder pb = new ProcessBuilder("bash", bootstrap.toAbsolutePath().toString());
+        pb.environment().remove("AWS_LAMBDA_FUNCTION_MEMORY_SIZE");
+        pb.environment().remove("BALLERINA_AWSLAMBDA_JVM_PROFILE");
+        pb.environment().remove("BALLERINA_AWSLAMBDA_JAVA_OPTS");
+        pb.environment().remove("BALLERINA_MAX_POOL_SIZE");
+        pb.environment().putAll(env);
+        pb.environment().put("LAMBDA_TASK_ROOT", this.workDir.resolve("task").toString());
+        pb.environment().put("BALLERINA_AWSLAMBDA_JAVA_HOME", this.workDir.resolve("jdk").toString());
+        pb.environment().put("_HANDLER", "functions." + handler);
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        Assert.assertTrue(process.waitFor(30, TimeUnit.SECONDS), "bootstrap did not exit");
+        return new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    @AfterClass
+    public void cleanUp() throws IOException {
+        TestUtils.deleteDirectory(this.workDir);
+    }
 }
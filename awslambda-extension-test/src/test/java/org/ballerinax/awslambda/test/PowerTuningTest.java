@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.PowerTuner;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test the local power tuning of a handler through the layer bootstrap.
+ */
+public class PowerTuningTest extends BaseTest {
+    private static final Log log = LogFactory.getLog(PowerTuningTest.class);
+
+    private PowerTuner tuner;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("deployment");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "functions.bal",
+                Collections.emptyMap());
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        Path bootstrap = Paths.get(FilenameUtils.separatorsToSystem(System.getProperty("ballerinaLayer")));
+        this.tuner = new PowerTuner(srcDirectory.resolve("aws-ballerina-lambda-functions.zip"), "functions.jar",
+                bootstrap, Collections.emptyMap(), true, PowerTuner.DEFAULT_PRICE_PER_GB_SECOND,
+                PowerTuner.DEFAULT_PRICE_PER_REQUEST);
+    }
+
+    @Test
+    public void testTuneHandler() throws IOException, InterruptedException {
+        List<PowerTuner.TuningResult> results = this.tuner.tune("echo",
+                Arrays.asList("{\"message\":\"Hello\"}", "{\"message\":\"World\"}"), new int[] { 512, 2048 }, 5);
+        Assert.assertEquals(results.size(), 2);
+        for (PowerTuner.TuningResult result : results) {
+            log.info("Power tuning of echo at " + result);
+            Assert.assertNull(result.getFailure(), result.toString());
+            Assert.assertTrue(result.getDurationMillis(50) > 0, result.toString());
+            Assert.assertTrue(result.getDurationMillis(50) <= result.getDurationMillis(99), result.toString());
+            // every invocation is billed for at least a millisecond, on top of the request price
+            double minimumCost = result.getMemorySize() / 1024.0 / 1000.0 * PowerTuner.DEFAULT_PRICE_PER_GB_SECOND +
+                    PowerTuner.DEFAULT_PRICE_PER_REQUEST;
+            Assert.assertTrue(result.getCostPerInvocation() >= minimumCost, result.toString());
+        }
+        Assert.assertTrue(results.contains(PowerTuner.recommend(results)));
+    }
+}
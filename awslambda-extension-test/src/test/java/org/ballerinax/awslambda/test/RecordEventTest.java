@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test;
+
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test the conversion of the payload to the record event of a handler.
+ */
+public class RecordEventTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+
+    private Path zipFile;
+    private RuntimeApiEmulator runtimeApi;
+    private LambdaFunctionProcess function;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.zipFile = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+        this.runtimeApi = new RuntimeApiEmulator();
+        this.function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar", "describePurchase",
+                this.runtimeApi, Collections.emptyMap());
+    }
+
+    @Test
+    public void testNestedFields() throws InterruptedException, TimeoutException, IOException {
+        // the undeclared fields of the closed event record and of its nested closed records are dropped
+        String event = "{\"id\":\"p1\",\"requestTime\":1545084650987,\"note\":\"gift\"," +
+                "\"shipTo\":{\"city\":\"Colombo\",\"zip\":\"00100\",\"country\":\"LK\"}," +
+                "\"items\":[{\"sku\":\"a\",\"quantity\":1,\"price\":2.5},{\"sku\":\"b\",\"quantity\":2}]}";
+        Assert.assertEquals(this.invoke(event), "{\"id\":\"p1\",\"city\":\"Colombo\",\"zip\":\"00100\"," +
+                "\"shipToFields\":2,\"quantity\":3,\"note\":\"gift\"}");
+    }
+
+    @Test
+    public void testOpenRecordFields() throws IOException, InterruptedException, TimeoutException {
+        // open records keep the fields they do not declare, which the handler can still read
+        try (RuntimeApiEmulator openRuntimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess openFunction = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "describeOrder", openRuntimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = openRuntimeApi.invoke("{\"id\":\"o1\"," +
+                    "\"channel\":\"web\",\"requestTime\":1545084650987}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + openFunction.getOutput());
+            Assert.assertEquals(result.getBody().replace(" ", ""), "{\"id\":\"o1\",\"channel\":\"web\",\"fields\":3}");
+        }
+    }
+
+    @Test
+    public void testMissingOptionalFields() throws InterruptedException, TimeoutException, IOException {
+        String event = "{\"id\":\"p2\",\"shipTo\":{\"city\":\"Kandy\"},\"items\":[]}";
+        Assert.assertEquals(this.invoke(event), "{\"id\":\"p2\",\"city\":\"Kandy\",\"zip\":\"none\"," +
+                "\"shipToFields\":1,\"quantity\":0,\"note\":\"none\"}");
+    }
+
+    @Test
+    public void testTypeMismatch() throws InterruptedException, TimeoutException, IOException {
+        // a field of another type in a nested record
+        RuntimeApiEmulator.InvocationResult result = this.runtimeApi.invoke("{\"id\":\"p3\"," +
+                "\"shipTo\":{\"city\":\"Galle\"},\"items\":[{\"sku\":\"a\",\"quantity\":\"two\"}]}")
+                .getResult(INVOCATION_TIMEOUT_MS);
+        Assert.assertTrue(result.isError(), result.getBody() + this.function.getOutput());
+        // a missing required field
+        result = this.runtimeApi.invoke("{\"id\":\"p4\",\"items\":[]}").getResult(INVOCATION_TIMEOUT_MS);
+        Assert.assertTrue(result.isError(), result.getBody() + this.function.getOutput());
+        // the failed conversions do not stop the function from processing the next event
+        Assert.assertEquals(this.invoke("{\"id\":\"p5\",\"shipTo\":{\"city\":\"Jaffna\"},\"items\":[]}"),
+                "{\"id\":\"p5\",\"city\":\"Jaffna\",\"zip\":\"none\",\"shipToFields\":1,\"quantity\":0," +
+                        "\"note\":\"none\"}");
+    }
+
+    private String invoke(String event) throws InterruptedException, TimeoutException, IOException {
+        RuntimeApiEmulator.InvocationResult result = this.runtimeApi.invoke(event).getResult(INVOCATION_TIMEOUT_MS);
+        Assert.assertFalse(result.isError(), result.getBody() + this.function.getOutput());
+        return result.getBody().replace(" ", "");
+    }
+
+    @AfterClass
+    public void cleanUp() throws IOException, InterruptedException {
+        if (this.function != null) {
+            this.function.close();
+        }
+        if (this.runtimeApi != null) {
+            this.runtimeApi.close();
+        }
+    }
+}
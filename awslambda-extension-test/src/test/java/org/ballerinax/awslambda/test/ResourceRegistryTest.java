@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test;
+
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test the resources which handlers get through the context.
+ */
+public class ResourceRegistryTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+
+    private Path zipFile;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.zipFile = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+    }
+
+    @Test
+    public void testResourceReused() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "useConnection", runtimeApi, Collections.emptyMap())) {
+            // the strands of the first invocation race for the connection, and it is created once
+            Assert.assertEquals(this.invoke(runtimeApi, function, "{\"strands\":8}"), "{\"builds\":1}");
+            Assert.assertEquals(this.invoke(runtimeApi, function, "{\"strands\":1}"), "{\"builds\":1}");
+        }
+    }
+
+    @Test
+    public void testFactoryGetsResource() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "useSession", runtimeApi, Collections.emptyMap())) {
+            // the factory of the session gets the connection, which needs the registry while the factory runs
+            Assert.assertEquals(this.invoke(runtimeApi, function, "{}"), "{\"open\":true,\"builds\":1}");
+        }
+    }
+
+    @Test
+    public void testUnhealthyResourceRebuilt() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "useConnection", runtimeApi, Collections.emptyMap())) {
+            Assert.assertEquals(this.invoke(runtimeApi, function, "{\"strands\":0}"), "{\"builds\":1}");
+            RuntimeApiEmulator.InvocationResult failed = runtimeApi.invoke("{\"strands\":0, \"close\":true}")
+                    .getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertTrue(failed.isError(), failed.getBody() + function.getOutput());
+            // the failed invocation triggers the health check, which finds the connection closed
+            Assert.assertEquals(this.invoke(runtimeApi, function, "{\"strands\":0}"), "{\"builds\":2}");
+            Assert.assertEquals(this.invoke(runtimeApi, function, "{\"strands\":0}"), "{\"builds\":2}");
+        }
+    }
+
+    @Test
+    public void testResourceOfOtherType() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "useWrongType", runtimeApi, Collections.emptyMap())) {
+            // the connection is asked for as another type, which is an error instead of a failed cast
+            Assert.assertEquals(this.invoke(runtimeApi, function, "{}"), "{\"mismatch\":true}");
+        }
+    }
+
+    private String invoke(RuntimeApiEmulator runtimeApi, LambdaFunctionProcess function, String event)
+            throws IOException, InterruptedException, TimeoutException {
+        RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke(event).getResult(INVOCATION_TIMEOUT_MS);
+        Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+        return result.getBody().replace(" ", "");
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test;
+
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Test the compression of API Gateway proxy responses.
+ */
+public class ResponseCompressionTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+
+    private Path zipFile;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.zipFile = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+    }
+
+    @Test
+    public void testGzipResponse() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "renderRows", runtimeApi, Collections.emptyMap())) {
+            // the compressor is reused by warm invocations, so each response must still be a complete stream
+            for (int rows : new int[] { 500, 200, 800 }) {
+                String response = this.invoke(runtimeApi, function, rows, "gzip, deflate, br");
+                Assert.assertEquals(getField(response, "Content-Encoding"), "gzip", response);
+                Assert.assertEquals(getField(response, "Vary"), "Accept-Encoding", response);
+                Assert.assertTrue(response.replace(" ", "").contains("\"isBase64Encoded\":true"), response);
+                byte[] compressed = Base64.getDecoder().decode(getField(response, "body"));
+                Assert.assertTrue(compressed.length < expectedBody(rows).length() / 2, response);
+                Assert.assertEquals(decompress(new GZIPInputStream(new ByteArrayInputStream(compressed))),
+                        expectedBody(rows));
+            }
+        }
+    }
+
+    @Test
+    public void testPreferredEncoding() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "renderRows", runtimeApi, Collections.emptyMap())) {
+            String response = this.invoke(runtimeApi, function, 500, "GZIP;q=0.5, deflate");
+            Assert.assertEquals(getField(response, "Content-Encoding"), "deflate", response);
+            byte[] compressed = Base64.getDecoder().decode(getField(response, "body"));
+            Assert.assertEquals(decompress(new InflaterInputStream(new ByteArrayInputStream(compressed))),
+                    expectedBody(500));
+
+            response = this.invoke(runtimeApi, function, 500, "gzip;q=0, identity");
+            Assert.assertNull(getField(response, "Content-Encoding"), response);
+            Assert.assertEquals(getField(response, "Vary"), "Accept-Encoding", response);
+            Assert.assertEquals(getField(response, "body").replace("\\n", "\n"), expectedBody(500));
+        }
+    }
+
+    @Test
+    public void testBelowThreshold() throws IOException, InterruptedException, TimeoutException {
+        Map<String, String> env = Collections.singletonMap("BALLERINA_AWSLAMBDA_COMPRESSION_THRESHOLD", "100000");
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "renderRows", runtimeApi, env)) {
+            String response = this.invoke(runtimeApi, function, 500, "gzip");
+            Assert.assertNull(getField(response, "Content-Encoding"), response);
+            Assert.assertNull(getField(response, "Vary"), response);
+            Assert.assertTrue(response.replace(" ", "").contains("\"isBase64Encoded\":false"), response);
+            Assert.assertTrue(response.replace(" ", "").contains("\"cookies\":[\"rows=500\"]"), response);
+        }
+    }
+
+    @Test
+    public void testNonJsonField() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "renderLayout", runtimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertTrue(result.isError(), result.getBody());
+            Assert.assertTrue(result.getBody().contains("Invalid response type"), result.getBody());
+            // the function is still serving invocations
+            result = runtimeApi.invoke("{}").getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertTrue(result.isError(), result.getBody() + function.getOutput());
+        }
+    }
+
+    private String invoke(RuntimeApiEmulator runtimeApi, LambdaFunctionProcess function, int rows,
+                          String acceptEncoding) throws IOException, InterruptedException, TimeoutException {
+        RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{\"rows\":" + rows +
+                ", \"headers\":{\"accept-encoding\":\"" + acceptEncoding + "\"}}").getResult(INVOCATION_TIMEOUT_MS);
+        Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+        return result.getBody();
+    }
+
+    private static String getField(String json, String name) {
+        Matcher matcher = Pattern.compile("\"" + name + "\"\\s*:\\s*\"([^\"]*)\"").matcher(json);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static String expectedBody(int rows) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            body.append("row ").append(i).append("\n");
+        }
+        return body.toString();
+    }
+
+    private static String decompress(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
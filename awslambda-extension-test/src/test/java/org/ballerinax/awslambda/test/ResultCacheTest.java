@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test;
+
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test the result cache of handlers with a cache TTL.
+ */
+public class ResultCacheTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+
+    private Path zipFile;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.zipFile = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+    }
+
+    @Test
+    public void testCachedResults() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "cachedSquare", runtimeApi, Collections.emptyMap())) {
+            String first = this.invoke(runtimeApi, function, "{\"n\":3, \"requestTime\":\"10:00:00\"}");
+            Assert.assertTrue(first.contains("\"square\":9"), first);
+            Assert.assertTrue(first.contains("\"calls\":1"), first);
+            // the field which the event type does not declare is not part of the cache key
+            Assert.assertEquals(this.invoke(runtimeApi, function, "{\"n\":3, \"requestTime\":\"10:00:01\"}"),
+                    first);
+
+            String other = this.invoke(runtimeApi, function, "{\"n\":4}");
+            Assert.assertTrue(other.contains("\"square\":16"), other);
+            Assert.assertTrue(other.contains("\"calls\":2"), other);
+            Assert.assertTrue(other.contains("\"hits\":1"), other);
+            Assert.assertTrue(other.contains("\"misses\":2"), other);
+        }
+    }
+
+    @Test
+    public void testExpiredResult() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "cachedSquare", runtimeApi, Collections.emptyMap())) {
+            Assert.assertTrue(this.invoke(runtimeApi, function, "{\"n\":5}").contains("\"calls\":1"));
+            // the handler has a TTL of one second
+            Thread.sleep(1500);
+            String response = this.invoke(runtimeApi, function, "{\"n\":5}");
+            Assert.assertTrue(response.contains("\"calls\":2"), response);
+            Assert.assertTrue(response.contains("\"hits\":0"), response);
+        }
+    }
+
+    private String invoke(RuntimeApiEmulator runtimeApi, LambdaFunctionProcess function, String event)
+            throws IOException, InterruptedException, TimeoutException {
+        RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke(event).getResult(INVOCATION_TIMEOUT_MS);
+        Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+        return result.getBody().replace(" ", "");
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Measure the per-invocation overhead of the runtime loop against a local Runtime API, and compare it with a minimal
+ * runtime loop which uses the default HTTP client configuration.
+ */
+public class RuntimeApiBenchmarkTest extends BaseTest {
+    private static final Log log = LogFactory.getLog(RuntimeApiBenchmarkTest.class);
+    private static final int WARMUP_INVOCATIONS = 200;
+    private static final int MEASURED_INVOCATIONS = 1000;
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+    // the median overhead is compared loosely, as the runs share the machine with other processes
+    private static final double MAX_MEDIAN_RATIO = 1.5;
+    private static final String EVENT = "{\"message\":\"Hello World!\"}";
+
+    private Path extractDir;
+    private Path baselineDir;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Map<String, String> buildEnv = Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(SOURCE_DIR.resolve("deployment"),
+                "functions.bal", buildEnv);
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.extractDir = Files.createTempDirectory("ballerina-aws-lambda-benchmark-");
+        TestUtils.extractZip(SOURCE_DIR.resolve("deployment").resolve("aws-ballerina-lambda-functions.zip"),
+                this.extractDir);
+        this.baselineDir = SOURCE_DIR.resolve("benchmark");
+        processOutput = TestUtils.compileBallerinaFile(this.baselineDir, "baseline.bal");
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+    }
+
+    @Test
+    public void testInvocationOverhead() throws IOException, InterruptedException, TimeoutException {
+        long defaultMedian = this.measure("default HTTP client", this.baselineDir, "baseline.jar",
+                Collections.emptyMap());
+        long tunedMedian = this.measure("Runtime API clients", this.extractDir, "functions.jar",
+                Collections.singletonMap("_HANDLER", "functions.echo"));
+        Assert.assertTrue(tunedMedian <= defaultMedian * MAX_MEDIAN_RATIO, "median overhead " + tunedMedian +
+                "ns with the Runtime API clients, " + defaultMedian + "ns with the default HTTP client");
+    }
+
+    /**
+     * Runs an echoing runtime loop from the given jar and returns the median invocation overhead.
+     */
+    private long measure(String configuration, Path directory, String jarName, Map<String, String> functionEnv)
+            throws IOException, InterruptedException, TimeoutException {
+        Map<String, String> env = new HashMap<>(functionEnv);
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator()) {
+            env.put("AWS_LAMBDA_RUNTIME_API", runtimeApi.getAddress());
+            Process function = TestUtils.startJava(directory, Arrays.asList("-jar", jarName), env,
+                    directory.resolve("function.log"));
+            try {
+                for (int i = 0; i < WARMUP_INVOCATIONS; i++) {
+                    this.invoke(runtimeApi);
+                }
+                List<Long> latencies = new ArrayList<>();
+                long start = System.nanoTime();
+                for (int i = 0; i < MEASURED_INVOCATIONS; i++) {
+                    latencies.add(this.invoke(runtimeApi).getLatencyNanos());
+                }
+                long totalMicros = (System.nanoTime() - start) / 1000;
+                Collections.sort(latencies);
+                log.info(String.format("Runtime API invocation overhead with the %s over %d invocations: " +
+                                "mean %dus, p50 %dus, p99 %dus, max %dus", configuration, MEASURED_INVOCATIONS,
+                        totalMicros / MEASURED_INVOCATIONS, latencies.get(latencies.size() / 2) / 1000,
+                        latencies.get(latencies.size() * 99 / 100) / 1000, latencies.get(latencies.size() - 1) / 1000));
+                return latencies.get(latencies.size() / 2);
+            } finally {
+                function.destroy();
+                function.waitFor();
+            }
+        }
+    }
+
+    private RuntimeApiEmulator.InvocationResult invoke(RuntimeApiEmulator runtimeApi)
+            throws InterruptedException, TimeoutException {
+        RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke(EVENT).getResult(INVOCATION_TIMEOUT_MS);
+        Assert.assertFalse(result.isError(), result.getBody());
+        Assert.assertTrue(result.getBody().contains("Hello World!"), result.getBody());
+        return result;
+    }
+
+    @AfterClass
+    public void cleanUp() throws IOException {
+        TestUtils.deleteDirectory(this.extractDir);
+        Files.deleteIfExists(this.baselineDir.resolve("baseline.jar"));
+        Files.deleteIfExists(this.baselineDir.resolve("function.log"));
+    }
+}
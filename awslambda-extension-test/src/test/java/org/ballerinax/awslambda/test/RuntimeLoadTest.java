@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.ballerinax.awslambda.test;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LoadHarness;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Load test of the runtime loop, started through the layer bootstrap against a local Runtime API. The rate,
+ * the number of invocations and the regression thresholds can be set with system properties.
+ */
+public class RuntimeLoadTest extends BaseTest {
+    private static final Log log = LogFactory.getLog(RuntimeLoadTest.class);
+    private static final String EVENT = "{\"message\":\"Hello World!\"}";
+
+    private LoadHarness harness;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("deployment");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "functions.bal",
+                Collections.emptyMap());
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        Path bootstrap = Paths.get(FilenameUtils.separatorsToSystem(System.getProperty("ballerinaLayer")));
+        this.harness = new LoadHarness(srcDirectory.resolve("aws-ballerina-lambda-functions.zip"),
+                "functions.jar", "echo", bootstrap, Collections.emptyMap());
+    }
+
+    @Test
+    public void testRuntimeLoad() throws IOException, InterruptedException, TimeoutException {
+        int invocations = Integer.getInteger("runtimeLoadInvocations", 1000);
+        int rate = Integer.getInteger("runtimeLoadRate", 200);
+        LoadHarness.LoadReport report = this.harness.run(EVENT, invocations, rate);
+        log.info("Runtime load test at " + rate + " events/s: " + report);
+        long maxColdStartMillis = Long.getLong("runtimeLoadMaxColdStartMillis", 30000);
+        long maxOverheadP99Micros = Long.getLong("runtimeLoadMaxOverheadP99Micros", 50000);
+        Assert.assertTrue(report.getColdStartMillis() <= maxColdStartMillis, report.toString());
+        Assert.assertTrue(report.getOverheadMicros(99) <= maxOverheadP99Micros, report.toString());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test;
+
+import org.ballerinax.awslambda.test.utils.BaseTest;
+import org.ballerinax.awslambda.test.utils.LambdaFunctionProcess;
+import org.ballerinax.awslambda.test.utils.ProcessOutput;
+import org.ballerinax.awslambda.test.utils.RuntimeApiEmulator;
+import org.ballerinax.awslambda.test.utils.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test handlers which stream their response to the Runtime API.
+ */
+public class StreamingResponseTest extends BaseTest {
+    private static final long INVOCATION_TIMEOUT_MS = 10000;
+
+    private Path zipFile;
+
+    @BeforeClass
+    public void setup() throws IOException, InterruptedException {
+        Path srcDirectory = SOURCE_DIR.resolve("runtime");
+        ProcessOutput processOutput = TestUtils.compileBallerinaFile(srcDirectory, "handlers.bal",
+                Collections.singletonMap("BALLERINA_AWSLAMBDA_CDS", "false"));
+        Assert.assertEquals(processOutput.getExitCode(), 0);
+        this.zipFile = srcDirectory.resolve("aws-ballerina-lambda-functions.zip");
+    }
+
+    @Test
+    public void testStreamedResponse() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "streamLines", runtimeApi, Collections.emptyMap())) {
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{\"count\":5}")
+                    .getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertFalse(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getResponseMode(), "streaming");
+            Assert.assertEquals(result.getBody(), "line 1\nline 2\nline 3\nline 4\nline 5\n");
+            // the handler sleeps after each chunk, so the first chunk must arrive well before the last one
+            Assert.assertTrue(result.getProcessingNanos() - result.getFirstByteNanos() > 500_000_000L,
+                    "first byte at " + result.getFirstByteNanos() + "ns, completed at " +
+                            result.getProcessingNanos() + "ns");
+        }
+    }
+
+    @Test
+    public void testErrorAfterStreaming() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "streamThenFail", runtimeApi, Collections.emptyMap())) {
+            // the chunk written before the handler failed has been sent, so the error follows it in the trailers
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{}")
+                    .getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertTrue(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertEquals(result.getResponseMode(), "streaming");
+            Assert.assertEquals(result.getBody(), "partial\n");
+            Assert.assertEquals(result.getErrorType(), "Runtime.HandlerError");
+            Assert.assertNotNull(result.getErrorBody(), function.getOutput());
+            Assert.assertTrue(result.getErrorBody().contains("Stream failed"), result.getErrorBody());
+        }
+    }
+
+    @Test
+    public void testErrorBeforeStreaming() throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator();
+             LambdaFunctionProcess function = LambdaFunctionProcess.start(this.zipFile, "handlers.jar",
+                     "streamLines", runtimeApi, Collections.emptyMap())) {
+            // no chunk is written before the handler fails, so the error is reported as an invocation error
+            RuntimeApiEmulator.InvocationResult result = runtimeApi.invoke("{}")
+                    .getResult(INVOCATION_TIMEOUT_MS);
+            Assert.assertTrue(result.isError(), result.getBody() + function.getOutput());
+            Assert.assertNull(result.getResponseMode());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A packaged AWS Lambda function running against a {@link RuntimeApiEmulator}.
+ */
+public class LambdaFunctionProcess implements AutoCloseable {
+    private final Path workDir;
+    private final Process process;
+
+    private LambdaFunctionProcess(Path workDir, Process process) {
+        this.workDir = workDir;
+        this.process = process;
+    }
+
+    /**
+     * Extracts a packaged function and starts it with the given handler.
+     *
+     * @param zipFile    packaged function zip
+     * @param jarName    name of the executable jar in the zip
+     * @param handler    name of the handler function
+     * @param runtimeApi Runtime API the function polls for events
+     * @param env        additional environment variables
+     * @return the started function
+     * @throws IOException if the function cannot be extracted or started
+     */
+    public static LambdaFunctionProcess start(Path zipFile, String jarName, String handler,
+                                              RuntimeApiEmulator runtimeApi, Map<String, String> env)
+            throws IOException {
+        Path workDir = Files.createTempDirectory("ballerina-aws-lambda-function-");
+        TestUtils.extractZip(zipFile, workDir);
+        Map<String, String> functionEnv = new HashMap<>(env);
+        functionEnv.put("AWS_LAMBDA_RUNTIME_API", runtimeApi.getAddress());
+        functionEnv.put("_HANDLER", jarName.substring(0, jarName.lastIndexOf('.')) + "." + handler);
+        Process process = TestUtils.startJava(workDir, Arrays.asList("-jar", jarName), functionEnv,
+                workDir.resolve("function.log"));
+        return new LambdaFunctionProcess(workDir, process);
+    }
+
+    /**
+     * Extracts a packaged function and starts it through the bootstrap of the Ballerina layer, the way AWS
+     * Lambda starts it. The bootstrap runs the function with the JDK of the test run. The AppCDS layer zip packaged
+     * next to the function zip is extracted along with it, if present.
+     *
+     * @param zipFile    packaged function zip
+     * @param jarName    name of the executable jar in the zip
+     * @param handler    name of the handler function
+     * @param runtimeApi Runtime API the function polls for events
+     * @param env        additional environment variables
+     * @param bootstrap  bootstrap script of the layer
+     * @return the started function
+     * @throws IOException if the function cannot be extracted or started
+     */
+    public static LambdaFunctionProcess startWithBootstrap(Path zipFile, String jarName, String handler,
+                                                           RuntimeApiEmulator runtimeApi, Map<String, String> env,
+                                                           Path bootstrap) throws IOException {
+        Path workDir = Files.createTempDirectory("ballerina-aws-lambda-function-");
+        TestUtils.extractZip(zipFile, workDir);
+        String zipName = zipFile.getFileName().toString();
+        Path cdsLayerZip = zipFile.resolveSibling(zipName.substring(0, zipName.lastIndexOf('.')) + "-cds.zip");
+        if (Files.exists(cdsLayerZip)) {
+            TestUtils.extractZip(cdsLayerZip, workDir);
+        }
+        ProcessBuilder pb = new ProcessBuilder("bash", bootstrap.toAbsolutePath().toString());
+        pb.directory(workDir.toFile());
+        // the JVM running the tests is used unless the environment selects another one
+        pb.environment().put("BALLERINA_AWSLAMBDA_JAVA_HOME", System.getProperty("java.home"));
+        pb.environment().putAll(env);
+        pb.environment().put("LAMBDA_TASK_ROOT", workDir.toString());
+        pb.environment().put("AWS_LAMBDA_RUNTIME_API", runtimeApi.getAddress());
+        pb.environment().put("_HANDLER", jarName.substring(0, jarName.lastIndexOf('.')) + "." + handler);
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(workDir.resolve("function.log").toFile());
+        return new LambdaFunctionProcess(workDir, pb.start());
+    }
+
+    /**
+     * Returns the output of the function process so far.
+     *
+     * @return process output
+     * @throws IOException if the output cannot be read
+     */
+    public String getOutput() throws IOException {
+        return new String(Files.readAllBytes(this.workDir.resolve("function.log")), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of live instances of the classes with the given simple name in a function started with
+     * {@link #start}, as reported by the class histogram of {@code jcmd}, which runs a full GC first.
+     *
+     * @param simpleName simple name of the classes
+     * @return the number of live instances
+     * @throws IOException          if jcmd cannot be run
+     * @throws InterruptedException if interrupted while waiting for jcmd
+     */
+    public long countLiveInstances(String simpleName) throws IOException, InterruptedException {
+        Path jcmd = Paths.get(System.getProperty("java.home"), "bin", "jcmd");
+        Process histogram = new ProcessBuilder(jcmd.toString(), String.valueOf(this.process.pid()),
+                "GC.class_histogram").redirectErrorStream(true).start();
+        String output = new String(histogram.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        histogram.waitFor();
+        long count = 0;
+        // the rows are the rank, the number of instances, the number of bytes and the class name
+        for (String line : output.split("\n")) {
+            String[] columns = line.trim().split("\\s+");
+            if (columns.length >= 4 && columns[0].endsWith(":") && columns[3].endsWith("." + simpleName)) {
+                count += Long.parseLong(columns[1]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Waits for the function process to exit on its own.
+     *
+     * @param timeoutMillis time to wait in milliseconds
+     * @return true if the process exited
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean waitForExit(long timeoutMillis) throws InterruptedException {
+        return this.process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends SIGTERM to the function process, the way AWS Lambda shuts down a function instance, and waits for it
+     * to exit. The output remains readable until the function is closed.
+     *
+     * @param timeoutMillis time to wait in milliseconds
+     * @return true if the process exited
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean terminate(long timeoutMillis) throws InterruptedException {
+        this.process.destroy();
+        return this.process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        // the bootstrap does not forward signals to the JVM it starts
+        this.process.descendants().forEach(ProcessHandle::destroy);
+        this.process.destroy();
+        this.process.waitFor();
+        TestUtils.deleteDirectory(this.workDir);
+    }
+}
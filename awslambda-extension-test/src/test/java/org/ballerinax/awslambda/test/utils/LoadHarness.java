@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.ballerinax.awslambda.test.utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Load test harness, which starts a packaged function through the bootstrap of the Ballerina layer against a
+ * {@link RuntimeApiEmulator} and queues events at a target rate.
+ */
+public class LoadHarness {
+    private static final long INVOCATION_TIMEOUT_MS = 30000;
+
+    private final Path zipFile;
+    private final String jarName;
+    private final String handler;
+    private final Path bootstrap;
+    private final Map<String, String> env;
+
+    public LoadHarness(Path zipFile, String jarName, String handler, Path bootstrap, Map<String, String> env) {
+        this.zipFile = zipFile;
+        this.jarName = jarName;
+        this.handler = handler;
+        this.bootstrap = bootstrap;
+        this.env = env;
+    }
+
+    /**
+     * Starts the function, measures its cold start with the first event, and then queues the given number of
+     * events at the target rate.
+     *
+     * @param event         event payload
+     * @param invocations   number of events queued after the cold start
+     * @param ratePerSecond target rate of queuing the events
+     * @return the load test report
+     * @throws IOException          if the function cannot be started
+     * @throws InterruptedException if interrupted while waiting for the results
+     * @throws TimeoutException     if the function does not respond in time
+     */
+    public LoadReport run(String event, int invocations, int ratePerSecond)
+            throws IOException, InterruptedException, TimeoutException {
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator()) {
+            // the first event is queued before the function starts, so its latency is the cold start time
+            RuntimeApiEmulator.Invocation coldInvocation = runtimeApi.invoke(event);
+            try (LambdaFunctionProcess function = LambdaFunctionProcess.startWithBootstrap(this.zipFile,
+                    this.jarName, this.handler, runtimeApi, this.env, this.bootstrap)) {
+                RuntimeApiEmulator.InvocationResult coldResult = this.getResult(coldInvocation, function);
+                List<RuntimeApiEmulator.Invocation> queued = Collections.synchronizedList(new ArrayList<>());
+                ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+                long start = System.nanoTime();
+                try {
+                    // events are queued at the target rate regardless of the responses, so a function which
+                    // cannot keep up shows it in the latency
+                    scheduler.scheduleAtFixedRate(() -> {
+                        if (queued.size() < invocations) {
+                            queued.add(runtimeApi.invoke(event));
+                        }
+                    }, 0, TimeUnit.SECONDS.toNanos(1) / ratePerSecond, TimeUnit.NANOSECONDS);
+                    long[] latencies = new long[invocations];
+                    long[] overheads = new long[invocations];
+                    for (int i = 0; i < invocations; i++) {
+                        while (queued.size() <= i) {
+                            Thread.sleep(1);
+                        }
+                        RuntimeApiEmulator.InvocationResult result = this.getResult(queued.get(i), function);
+                        latencies[i] = result.getLatencyNanos();
+                        overheads[i] = result.getProcessingNanos();
+                    }
+                    long elapsedNanos = System.nanoTime() - start;
+                    return new LoadReport(coldResult.getLatencyNanos(), latencies, overheads, elapsedNanos);
+                } finally {
+                    scheduler.shutdownNow();
+                }
+            }
+        }
+    }
+
+    private RuntimeApiEmulator.InvocationResult getResult(RuntimeApiEmulator.Invocation invocation,
+                                                          LambdaFunctionProcess function)
+            throws IOException, InterruptedException, TimeoutException {
+        RuntimeApiEmulator.InvocationResult result;
+        try {
+            result = invocation.getResult(INVOCATION_TIMEOUT_MS);
+        } catch (TimeoutException e) {
+            throw new TimeoutException("function did not respond in time: " + function.getOutput());
+        }
+        if (result.isError()) {
+            throw new IllegalStateException("invocation failed: " + result.getBody());
+        }
+        return result;
+    }
+
+    /**
+     * Cold start time, invocation overhead percentiles and throughput of a load test run.
+     */
+    public static class LoadReport {
+        private final long coldStartNanos;
+        private final long[] latencies;
+        private final long[] overheads;
+        private final long elapsedNanos;
+
+        private LoadReport(long coldStartNanos, long[] latencies, long[] overheads, long elapsedNanos) {
+            this.coldStartNanos = coldStartNanos;
+            this.latencies = latencies.clone();
+            this.overheads = overheads.clone();
+            this.elapsedNanos = elapsedNanos;
+            Arrays.sort(this.latencies);
+            Arrays.sort(this.overheads);
+        }
+
+        /**
+         * Returns the time from starting the function to receiving the result of the first event.
+         *
+         * @return cold start time in milliseconds
+         */
+        public long getColdStartMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(this.coldStartNanos);
+        }
+
+        /**
+         * Returns a percentile of the time from handing out an event to receiving its result, which is the
+         * overhead of the runtime loop for a trivial handler.
+         *
+         * @param percentile percentile from 0 to 100
+         * @return invocation overhead in microseconds
+         */
+        public long getOverheadMicros(int percentile) {
+            return TimeUnit.NANOSECONDS.toMicros(percentileOf(this.overheads, percentile));
+        }
+
+        /**
+         * Returns a percentile of the time from queuing an event to receiving its result.
+         *
+         * @param percentile percentile from 0 to 100
+         * @return invocation latency in microseconds
+         */
+        public long getLatencyMicros(int percentile) {
+            return TimeUnit.NANOSECONDS.toMicros(percentileOf(this.latencies, percentile));
+        }
+
+        /**
+         * Returns the number of invocations completed per second after the cold start.
+         *
+         * @return throughput in invocations per second
+         */
+        public double getThroughput() {
+            return this.latencies.length / (this.elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        private static long percentileOf(long[] sorted, int percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("cold start %dms, overhead p50 %dus, p99 %dus, latency p50 %dus, p99 %dus, " +
+                            "throughput %.1f/s over %d invocations", this.getColdStartMillis(),
+                    this.getOverheadMicros(50), this.getOverheadMicros(99), this.getLatencyMicros(50),
+                    this.getLatencyMicros(99), this.getThroughput(), this.latencies.length);
+        }
+    }
+}
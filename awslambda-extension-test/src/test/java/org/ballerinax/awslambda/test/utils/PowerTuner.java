@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Local power tuning of the handlers of a packaged function. The sample events are replayed against each handler
+ * through the bootstrap of the Ballerina layer at each simulated memory size, which the bootstrap turns into the
+ * heap size and the -XX:ActiveProcessorCount of the JVM, and the durations are priced as AWS Lambda bills them.
+ * <p>
+ * A local machine cannot give the JVM a fraction of a CPU, so with CPU scaling the measured durations are
+ * scaled by the share of a vCPU a function gets at each memory size. This is accurate for CPU bound handlers
+ * and overestimates handlers which mostly wait for I/O, which should be tuned with CPU scaling turned off.
+ */
+public class PowerTuner {
+    public static final String MEMORY_SIZE_ENV = "AWS_LAMBDA_FUNCTION_MEMORY_SIZE";
+
+    // the memory size at which a function gets one full vCPU
+    public static final int FULL_VCPU_MEMORY_MB = 1769;
+
+    // x86 prices in us-east-1
+    public static final double DEFAULT_PRICE_PER_GB_SECOND = 0.0000166667;
+
+    public static final double DEFAULT_PRICE_PER_REQUEST = 0.0000002;
+
+    private static final String DEFAULT_MEMORY_SIZES = "128,256,512,1024,1769,3008";
+
+    private static final long INVOCATION_TIMEOUT_MS = 60000;
+
+    private final Path zipFile;
+    private final String jarName;
+    private final Path bootstrap;
+    private final Map<String, String> env;
+    private final boolean cpuScaling;
+    private final double pricePerGbSecond;
+    private final double pricePerRequest;
+
+    public PowerTuner(Path zipFile, String jarName, Path bootstrap, Map<String, String> env, boolean cpuScaling,
+                      double pricePerGbSecond, double pricePerRequest) {
+        this.zipFile = zipFile;
+        this.jarName = jarName;
+        this.bootstrap = bootstrap;
+        this.env = env;
+        this.cpuScaling = cpuScaling;
+        this.pricePerGbSecond = pricePerGbSecond;
+        this.pricePerRequest = pricePerRequest;
+    }
+
+    /**
+     * Tunes a handler at each of the given memory sizes.
+     *
+     * @param handler     handler function name
+     * @param events      sample event payloads
+     * @param memorySizes simulated memory sizes in MB
+     * @param rounds      number of times the sample events are replayed after the cold start
+     * @return the result of each memory size, in the given order
+     * @throws IOException          if the function cannot be started
+     * @throws InterruptedException if interrupted while waiting for the results
+     */
+    public List<TuningResult> tune(String handler, List<String> events, int[] memorySizes, int rounds)
+            throws IOException, InterruptedException {
+        List<TuningResult> results = new ArrayList<>();
+        for (int memorySize : memorySizes) {
+            results.add(this.run(handler, events, memorySize, rounds));
+        }
+        return results;
+    }
+
+    /**
+     * Replays the sample events against a handler at a simulated memory size. The events are sent one at a
+     * time, as AWS Lambda does to a function instance, and the first one measures the cold start.
+     *
+     * @param handler    handler function name
+     * @param events     sample event payloads
+     * @param memorySize simulated memory size in MB
+     * @param rounds     number of times the sample events are replayed after the cold start
+     * @return the tuning result, which holds the failure if an invocation failed or timed out
+     * @throws IOException          if the function cannot be started
+     * @throws InterruptedException if interrupted while waiting for the results
+     */
+    public TuningResult run(String handler, List<String> events, int memorySize, int rounds)
+            throws IOException, InterruptedException {
+        Map<String, String> functionEnv = new HashMap<>(this.env);
+        functionEnv.put(MEMORY_SIZE_ENV, String.valueOf(memorySize));
+        double cpuFactor = this.cpuScaling ? Math.max(1.0, FULL_VCPU_MEMORY_MB / (double) memorySize) : 1.0;
+        try (RuntimeApiEmulator runtimeApi = new RuntimeApiEmulator()) {
+            // the first event is queued before the function starts, so its latency is the cold start time
+            RuntimeApiEmulator.Invocation coldInvocation = runtimeApi.invoke(events.get(0));
+            try (LambdaFunctionProcess function = LambdaFunctionProcess.startWithBootstrap(this.zipFile,
+                    this.jarName, handler, runtimeApi, functionEnv, this.bootstrap)) {
+                try {
+                    long coldStartNanos = this.getResult(coldInvocation, function).getLatencyNanos();
+                    long[] durations = new long[rounds * events.size()];
+                    for (int i = 0; i < durations.length; i++) {
+                        RuntimeApiEmulator.Invocation invocation = runtimeApi.invoke(events.get(i % events.size()));
+                        durations[i] = (long) (this.getResult(invocation, function).getProcessingNanos() *
+                                cpuFactor);
+                    }
+                    return new TuningResult(handler, memorySize, coldStartNanos, durations, null,
+                            this.pricePerGbSecond, this.pricePerRequest);
+                } catch (IllegalStateException | TimeoutException e) {
+                    // a memory size which is too small for the handler is reported instead of ending the run
+                    return new TuningResult(handler, memorySize, 0, new long[0], e.getMessage(),
+                            this.pricePerGbSecond, this.pricePerRequest);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recommends the memory size with the lowest cost per invocation, preferring the faster one when two
+     * sizes cost the same.
+     *
+     * @param results tuning results of a handler
+     * @return the recommended result, or null if every memory size failed
+     */
+    public static TuningResult recommend(List<TuningResult> results) {
+        TuningResult recommended = null;
+        for (TuningResult result : results) {
+            if (result.getFailure() != null) {
+                continue;
+            }
+            if (recommended == null || result.getCostPerInvocation() < recommended.getCostPerInvocation() ||
+                    (result.getCostPerInvocation() == recommended.getCostPerInvocation() &&
+                            result.getDurationMillis(50) < recommended.getDurationMillis(50))) {
+                recommended = result;
+            }
+        }
+        return recommended;
+    }
+
+    private RuntimeApiEmulator.InvocationResult getResult(RuntimeApiEmulator.Invocation invocation,
+                                                          LambdaFunctionProcess function)
+            throws IOException, InterruptedException, TimeoutException {
+        RuntimeApiEmulator.InvocationResult result;
+        try {
+            result = invocation.getResult(INVOCATION_TIMEOUT_MS);
+        } catch (TimeoutException e) {
+            throw new TimeoutException("function did not respond in time: " + function.getOutput());
+        }
+        if (result.isError()) {
+            throw new IllegalStateException("invocation failed: " + result.getBody());
+        }
+        return result;
+    }
+
+    /**
+     * Tunes the handlers of a packaged function and prints a report for each of them. The function and the
+     * sample events are set with the system properties which the powerTune Gradle task sets.
+     *
+     * @param args unused
+     * @throws IOException          if the function or the events cannot be read
+     * @throws InterruptedException if interrupted while waiting for the results
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path zipFile = Paths.get(requireProperty("tuning.zip"));
+        List<String> events = readEvents(Paths.get(requireProperty("tuning.events")));
+        int[] memorySizes = Arrays.stream(System.getProperty("tuning.memorySizes", DEFAULT_MEMORY_SIZES)
+                .split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+        PowerTuner tuner = new PowerTuner(zipFile, findJarName(zipFile),
+                Paths.get(requireProperty("ballerinaLayer")), Collections.emptyMap(),
+                Boolean.parseBoolean(System.getProperty("tuning.cpuScaling", "true")),
+                Double.parseDouble(System.getProperty("tuning.pricePerGbSecond",
+                        String.valueOf(DEFAULT_PRICE_PER_GB_SECOND))),
+                Double.parseDouble(System.getProperty("tuning.pricePerRequest",
+                        String.valueOf(DEFAULT_PRICE_PER_REQUEST))));
+        int rounds = Integer.getInteger("tuning.rounds", 20);
+        for (String handler : requireProperty("tuning.handlers").split(",")) {
+            List<TuningResult> results = tuner.tune(handler.trim(), events, memorySizes, rounds);
+            System.out.println(handler.trim() + ":");
+            for (TuningResult result : results) {
+                System.out.println("  " + result);
+            }
+            TuningResult recommended = recommend(results);
+            System.out.println(recommended == null ? "  no memory size succeeded" :
+                    "  recommended memory size: " + recommended.getMemorySize() + " MB");
+        }
+    }
+
+    private static String requireProperty(String name) {
+        String value = System.getProperty(name, "");
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("the " + name + " system property is not set");
+        }
+        return value;
+    }
+
+    /**
+     * Reads the sample events, which are either a single JSON file or the JSON files of a directory in name
+     * order.
+     */
+    private static List<String> readEvents(Path path) throws IOException {
+        List<Path> files;
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> children = Files.list(path)) {
+                files = children.filter(file -> file.getFileName().toString().endsWith(".json")).sorted()
+                        .collect(Collectors.toList());
+            }
+        } else {
+            files = Collections.singletonList(path);
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("no sample events in " + path);
+        }
+        List<String> events = new ArrayList<>();
+        for (Path file : files) {
+            events.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        }
+        return events;
+    }
+
+    private static String findJarName(Path zipFile) throws IOException {
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            return Collections.list(zip.entries()).stream().map(ZipEntry::getName)
+                    .filter(name -> name.endsWith(".jar") && !name.contains("/")).findFirst()
+                    .orElseThrow(() -> new IOException("no executable jar in " + zipFile));
+        }
+    }
+
+    /**
+     * Cold start, duration percentiles and cost per invocation of a handler at a simulated memory size.
+     */
+    public static class TuningResult {
+        private final String handler;
+        private final int memorySize;
+        private final long coldStartNanos;
+        private final long[] durations;
+        private final String failure;
+        private final double pricePerGbSecond;
+        private final double pricePerRequest;
+
+        private TuningResult(String handler, int memorySize, long coldStartNanos, long[] durations, String failure,
+                             double pricePerGbSecond, double pricePerRequest) {
+            this.handler = handler;
+            this.memorySize = memorySize;
+            this.coldStartNanos = coldStartNanos;
+            this.durations = durations.clone();
+            this.failure = failure;
+            this.pricePerGbSecond = pricePerGbSecond;
+            this.pricePerRequest = pricePerRequest;
+            Arrays.sort(this.durations);
+        }
+
+        public String getHandler() {
+            return this.handler;
+        }
+
+        public int getMemorySize() {
+            return this.memorySize;
+        }
+
+        /**
+         * Returns the failure of the run, such as the error of an invocation which ran out of memory.
+         *
+         * @return the failure message, or null if every invocation succeeded
+         */
+        public String getFailure() {
+            return this.failure;
+        }
+
+        /**
+         * Returns the time from starting the function to receiving the result of the first event.
+         *
+         * @return cold start time in milliseconds
+         */
+        public long getColdStartMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(this.coldStartNanos);
+        }
+
+        /**
+         * Returns a percentile of the time from handing out an event to receiving its result, which is the
+         * billed duration.
+         *
+         * @param percentile percentile from 0 to 100
+         * @return invocation duration in milliseconds
+         */
+        public double getDurationMillis(int percentile) {
+            if (this.durations.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * this.durations.length) - 1;
+            return this.durations[Math.max(0, Math.min(index, this.durations.length - 1))] / 1e6;
+        }
+
+        /**
+         * Returns the mean billed duration, with each duration rounded up to the next millisecond as AWS Lambda
+         * bills it.
+         *
+         * @return mean billed duration in milliseconds
+         */
+        public double getBilledMillis() {
+            if (this.durations.length == 0) {
+                return 0;
+            }
+            long billed = 0;
+            for (long duration : this.durations) {
+                billed += Math.max(1, (duration + 999_999) / 1_000_000);
+            }
+            return billed / (double) this.durations.length;
+        }
+
+        /**
+         * Returns the mean cost of an invocation, which is the compute cost of the billed duration at the
+         * memory size and the request price.
+         *
+         * @return cost per invocation in USD
+         */
+        public double getCostPerInvocation() {
+            return this.getBilledMillis() / 1000.0 * this.memorySize / 1024.0 * this.pricePerGbSecond +
+                    this.pricePerRequest;
+        }
+
+        @Override
+        public String toString() {
+            if (this.failure != null) {
+                return String.format("%5d MB: failed, %s", this.memorySize, this.failure);
+            }
+            return String.format("%5d MB: cold start %dms, duration p50 %.1fms, p90 %.1fms, p99 %.1fms, " +
+                            "cost $%.10f per invocation", this.memorySize, this.getColdStartMillis(),
+                    this.getDurationMillis(50), this.getDurationMillis(90), this.getDurationMillis(99),
+                    this.getCostPerInvocation());
+        }
+    }
+}
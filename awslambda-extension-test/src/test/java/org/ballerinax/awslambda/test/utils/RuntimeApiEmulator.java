@@ -0,0 +1,658 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda.test.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Local stand-in for the AWS Lambda Runtime API, which hands out queued events to a function process and
+ * records the responses it posts back. It serves HTTP/1.1 over plain sockets, since the JDK HTTP server
+ * drops requests which end with trailers, and streamed responses report errors in their trailers.
+ */
+public class RuntimeApiEmulator implements AutoCloseable {
+    public static final String INVOCATION_PATH = "/2018-06-01/runtime/invocation/";
+    public static final String INIT_ERROR_PATH = "/2018-06-01/runtime/init/error";
+    public static final String RESTORE_NEXT_PATH = "/2018-06-01/runtime/restore/next";
+    public static final String RESTORE_ERROR_PATH = "/2018-06-01/runtime/restore/error";
+    public static final String RESPONSE_MODE_HEADER = "Lambda-Runtime-Function-Response-Mode";
+    public static final String ERROR_TYPE_HEADER = "Lambda-Runtime-Function-Error-Type";
+    public static final String ERROR_BODY_HEADER = "Lambda-Runtime-Function-Error-Body";
+    private static final String FUNCTION_ARN = "arn:aws:lambda:us-west-2:123456789012:function:test";
+    private static final long DEADLINE_MS = 10000;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<Invocation> pending = new LinkedBlockingQueue<>();
+    private final Map<String, Invocation> inflight = new ConcurrentHashMap<>();
+    private final CompletableFuture<InvocationResult> initError = new CompletableFuture<>();
+    private final CompletableFuture<Integer> checkpoint = new CompletableFuture<>();
+    private final CompletableFuture<Void> restore = new CompletableFuture<>();
+    private final CompletableFuture<InvocationResult> restoreError = new CompletableFuture<>();
+
+    public RuntimeApiEmulator() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        // a thread per connection, as long polling next requests block a thread each
+        this.executor = Executors.newCachedThreadPool();
+        this.executor.execute(this::accept);
+    }
+
+    /**
+     * Returns the address to set as AWS_LAMBDA_RUNTIME_API of the function process.
+     *
+     * @return host and port of the emulator
+     */
+    public String getAddress() {
+        return this.serverSocket.getInetAddress().getHostAddress() + ":" + this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Queues an event for the function process.
+     *
+     * @param event event payload
+     * @return the queued invocation
+     */
+    public Invocation invoke(String event) {
+        return this.invoke(event, DEADLINE_MS);
+    }
+
+    /**
+     * Queues an event for the function process with the given execution time limit.
+     *
+     * @param event      event payload
+     * @param deadlineMs execution time limit in milliseconds, counted from when the event is handed out
+     * @return the queued invocation
+     */
+    public Invocation invoke(String event, long deadlineMs) {
+        return this.invoke(event.getBytes(StandardCharsets.UTF_8), deadlineMs);
+    }
+
+    /**
+     * Queues an event with a raw payload, which need not be JSON or text, for the function process.
+     *
+     * @param event event payload
+     * @return the queued invocation
+     */
+    public Invocation invoke(byte[] event) {
+        return this.invoke(event, DEADLINE_MS);
+    }
+
+    private Invocation invoke(byte[] event, long deadlineMs) {
+        Invocation invocation = new Invocation(UUID.randomUUID().toString(), event, deadlineMs);
+        this.inflight.put(invocation.requestId, invocation);
+        this.pending.add(invocation);
+        return invocation;
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                Socket connection = this.serverSocket.accept();
+                this.connections.add(connection);
+                this.executor.execute(() -> this.serve(connection));
+            } catch (IOException e) {
+                // the emulator is shutting down
+                return;
+            }
+        }
+    }
+
+    /**
+     * Serves the requests of a kept-alive connection one after the other.
+     */
+    private void serve(Socket connection) {
+        try (Socket socket = connection) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            Exchange exchange;
+            while ((exchange = Exchange.read(in, out, socket.getPort())) != null) {
+                this.dispatch(exchange);
+                if (!exchange.responded || "close".equalsIgnoreCase(exchange.getRequestHeader("Connection"))) {
+                    return;
+                }
+                // the next request starts after the body of this one
+                exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+            }
+        } catch (IOException e) {
+            // the function process closed the connection, or the emulator is shutting down
+        } finally {
+            this.connections.remove(connection);
+        }
+    }
+
+    private void dispatch(Exchange exchange) throws IOException {
+        if (exchange.path.startsWith(INVOCATION_PATH)) {
+            this.handle(exchange);
+        } else if (exchange.path.startsWith(INIT_ERROR_PATH)) {
+            this.handleError(exchange, this.initError);
+        } else if (exchange.path.startsWith(RESTORE_NEXT_PATH)) {
+            this.handleRestoreNext(exchange);
+        } else if (exchange.path.startsWith(RESTORE_ERROR_PATH)) {
+            this.handleError(exchange, this.restoreError);
+        } else {
+            exchange.send(404, new byte[0]);
+        }
+    }
+
+    private void handle(Exchange exchange) throws IOException {
+        String path = exchange.path.substring(INVOCATION_PATH.length());
+        if ("GET".equals(exchange.method) && "next".equals(path)) {
+            this.handleNext(exchange);
+            return;
+        }
+        int separator = path.indexOf('/');
+        Invocation invocation = separator < 0 ? null : this.inflight.remove(path.substring(0, separator));
+        if (!"POST".equals(exchange.method) || invocation == null) {
+            exchange.send(404, new byte[0]);
+            return;
+        }
+        // the first byte is read separately to record when a streamed response started to arrive
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        long firstByteNanos = 0;
+        InputStream in = exchange.getRequestBody();
+        int first = in.read();
+        if (first != -1) {
+            firstByteNanos = System.nanoTime();
+            body.write(first);
+            in.transferTo(body);
+        }
+        exchange.send(202, new byte[0]);
+        // a streamed response which failed after it started reports the error in its trailers
+        String trailerErrorType = exchange.trailers.get(ERROR_TYPE_HEADER);
+        String trailerErrorBody = exchange.trailers.get(ERROR_BODY_HEADER);
+        InvocationResult result = new InvocationResult(path.endsWith("/error") || trailerErrorType != null,
+                body.toByteArray(), exchange.getRequestHeader(RESPONSE_MODE_HEADER),
+                trailerErrorType != null ? trailerErrorType : exchange.getRequestHeader(ERROR_TYPE_HEADER),
+                trailerErrorBody == null ? null :
+                        new String(Base64.getDecoder().decode(trailerErrorBody), StandardCharsets.UTF_8));
+        invocation.complete(result, firstByteNanos);
+    }
+
+    private void handleError(Exchange exchange, CompletableFuture<InvocationResult> error) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        exchange.send(202, new byte[0]);
+        error.complete(new InvocationResult(true, body, null, exchange.getRequestHeader(ERROR_TYPE_HEADER), null));
+    }
+
+    private void handleRestoreNext(Exchange exchange) throws IOException {
+        // the function instance is ready to be checkpointed, and it is restored when the request returns
+        this.checkpoint.complete(exchange.remotePort);
+        try {
+            this.restore.get();
+        } catch (InterruptedException e) {
+            // the emulator is shutting down
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        exchange.send(200, new byte[0]);
+    }
+
+    /**
+     * Waits for a function process initialised for SnapStart to signal that it is ready to be checkpointed.
+     *
+     * @param timeoutMillis time to wait in milliseconds
+     * @return the client port of the connection the function process signalled on
+     * @throws InterruptedException if interrupted while waiting
+     * @throws TimeoutException     if the function process did not signal in time
+     */
+    public int awaitCheckpoint(long timeoutMillis) throws InterruptedException, TimeoutException {
+        try {
+            return this.checkpoint.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Simulates the restore of the checkpointed function process, which continues with the after restore hooks
+     * and polling for events.
+     */
+    public void restore() {
+        this.restore.complete(null);
+    }
+
+    /**
+     * Waits for the function process to report a restore error.
+     *
+     * @param timeoutMillis time to wait in milliseconds
+     * @return the reported restore error
+     * @throws InterruptedException if interrupted while waiting
+     * @throws TimeoutException     if the function process did not report a restore error in time
+     */
+    public InvocationResult getRestoreError(long timeoutMillis) throws InterruptedException, TimeoutException {
+        try {
+            return this.restoreError.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Waits for the function process to report an init error.
+     *
+     * @param timeoutMillis time to wait in milliseconds
+     * @return the reported init error
+     * @throws InterruptedException if interrupted while waiting
+     * @throws TimeoutException     if the function process did not report an init error in time
+     */
+    public InvocationResult getInitError(long timeoutMillis) throws InterruptedException, TimeoutException {
+        try {
+            return this.initError.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void handleNext(Exchange exchange) throws IOException {
+        Invocation invocation;
+        try {
+            invocation = this.pending.take();
+        } catch (InterruptedException e) {
+            // the emulator is shutting down
+            Thread.currentThread().interrupt();
+            return;
+        }
+        invocation.polledNanos = System.nanoTime();
+        invocation.polledPort = exchange.remotePort;
+        exchange.responseHeaders.put("Lambda-Runtime-Aws-Request-Id", invocation.requestId);
+        exchange.responseHeaders.put("Lambda-Runtime-Deadline-Ms",
+                String.valueOf(System.currentTimeMillis() + invocation.deadlineMs));
+        exchange.responseHeaders.put("Lambda-Runtime-Invoked-Function-Arn", FUNCTION_ARN);
+        exchange.responseHeaders.put("Lambda-Runtime-Trace-Id", "Root=1-" + invocation.requestId);
+        exchange.responseHeaders.put("Content-Type", "application/json");
+        exchange.send(200, invocation.event);
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.serverSocket.close();
+        } catch (IOException e) {
+            // the emulator is shutting down
+        }
+        for (Socket connection : this.connections) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                // the connection is closed already
+            }
+        }
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * A request read from a connection and its response.
+     */
+    private static class Exchange {
+        private final String method;
+        private final String path;
+        private final int remotePort;
+        private final Map<String, String> requestHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final Map<String, String> trailers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final Map<String, String> responseHeaders = new LinkedHashMap<>();
+        private final OutputStream out;
+        private InputStream body;
+        private boolean responded;
+
+        private Exchange(String method, String path, int remotePort, OutputStream out) {
+            this.method = method;
+            this.path = path;
+            this.remotePort = remotePort;
+            this.out = out;
+        }
+
+        /**
+         * Reads the head of the next request of a connection.
+         *
+         * @return the exchange, or null if the connection was closed
+         */
+        private static Exchange read(InputStream in, OutputStream out, int remotePort) throws IOException {
+            String requestLine = readLine(in);
+            if (requestLine == null) {
+                return null;
+            }
+            String[] parts = requestLine.split(" ");
+            if (parts.length != 3) {
+                throw new IOException("Invalid request line: " + requestLine);
+            }
+            int query = parts[1].indexOf('?');
+            Exchange exchange = new Exchange(parts[0], query < 0 ? parts[1] : parts[1].substring(0, query),
+                    remotePort, out);
+            readHeaders(in, exchange.requestHeaders);
+            if ("chunked".equalsIgnoreCase(exchange.getRequestHeader("Transfer-Encoding"))) {
+                exchange.body = new ChunkedInputStream(in, exchange.trailers);
+            } else {
+                String contentLength = exchange.getRequestHeader("Content-Length");
+                exchange.body = new FixedLengthInputStream(in,
+                        contentLength == null ? 0 : Long.parseLong(contentLength.trim()));
+            }
+            return exchange;
+        }
+
+        private String getRequestHeader(String name) {
+            return this.requestHeaders.get(name);
+        }
+
+        private InputStream getRequestBody() {
+            return this.body;
+        }
+
+        private void send(int status, byte[] responseBody) throws IOException {
+            StringBuilder head = new StringBuilder("HTTP/1.1 ").append(status).append(' ')
+                    .append(status == 404 ? "Not Found" : status == 202 ? "Accepted" : "OK").append("\r\n");
+            this.responseHeaders.forEach((name, value) -> head.append(name).append(": ").append(value)
+                    .append("\r\n"));
+            head.append("Content-Length: ").append(responseBody.length).append("\r\n\r\n");
+            this.out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+            this.out.write(responseBody);
+            this.out.flush();
+            this.responded = true;
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                throw new EOFException("Connection closed in the middle of a line");
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static void readHeaders(InputStream in, Map<String, String> headers) throws IOException {
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int separator = line.indexOf(':');
+            if (separator > 0) {
+                headers.put(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+            }
+        }
+    }
+
+    /**
+     * A request body with a Content-Length.
+     */
+    private static class FixedLengthInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        private FixedLengthInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return this.read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (this.remaining == 0) {
+                return -1;
+            }
+            int read = this.in.read(b, off, (int) Math.min(len, this.remaining));
+            if (read == -1) {
+                throw new EOFException("Connection closed in the middle of a request body");
+            }
+            this.remaining -= read;
+            return read;
+        }
+    }
+
+    /**
+     * A request body in chunked transfer encoding, which records the trailers that follow the last chunk.
+     */
+    private static class ChunkedInputStream extends InputStream {
+        private final InputStream in;
+        private final Map<String, String> trailers;
+        private int remaining;
+        private boolean ended;
+
+        private ChunkedInputStream(InputStream in, Map<String, String> trailers) {
+            this.in = in;
+            this.trailers = trailers;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return this.read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (this.remaining == 0 && !this.ended) {
+                String sizeLine = readLine(this.in);
+                if (sizeLine == null) {
+                    throw new EOFException("Connection closed before the last chunk");
+                }
+                int extension = sizeLine.indexOf(';');
+                this.remaining = Integer.parseInt(
+                        (extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+                if (this.remaining == 0) {
+                    readHeaders(this.in, this.trailers);
+                    this.ended = true;
+                }
+            }
+            if (this.ended) {
+                return -1;
+            }
+            int read = this.in.read(b, off, Math.min(len, this.remaining));
+            if (read == -1) {
+                throw new EOFException("Connection closed in the middle of a chunk");
+            }
+            this.remaining -= read;
+            if (this.remaining == 0) {
+                // the line break which ends the chunk data
+                readLine(this.in);
+            }
+            return read;
+        }
+    }
+
+    /**
+     * An event queued for the function process.
+     */
+    public static class Invocation {
+        private final String requestId;
+        private final byte[] event;
+        private final long deadlineMs;
+        private final long queuedNanos = System.nanoTime();
+        private final CompletableFuture<InvocationResult> result = new CompletableFuture<>();
+        private volatile long polledNanos;
+        private volatile int polledPort;
+
+        private Invocation(String requestId, byte[] event, long deadlineMs) {
+            this.requestId = requestId;
+            this.event = event;
+            this.deadlineMs = deadlineMs;
+        }
+
+        private void complete(InvocationResult invocationResult, long firstByteNanos) {
+            long now = System.nanoTime();
+            invocationResult.latencyNanos = now - this.queuedNanos;
+            invocationResult.processingNanos = now - this.polledNanos;
+            invocationResult.firstByteNanos = firstByteNanos == 0 ? 0 : firstByteNanos - this.polledNanos;
+            this.result.complete(invocationResult);
+        }
+
+        public String getRequestId() {
+            return requestId;
+        }
+
+        /**
+         * Returns the client port of the connection the event was handed out on.
+         *
+         * @return client port, or 0 if the event has not been handed out
+         */
+        public int getPolledPort() {
+            return polledPort;
+        }
+
+        /**
+         * Waits for the function process to post the response or the error of the invocation.
+         *
+         * @param timeoutMillis time to wait in milliseconds
+         * @return the invocation result
+         * @throws InterruptedException if interrupted while waiting
+         * @throws TimeoutException     if the function process did not respond in time
+         */
+        public InvocationResult getResult(long timeoutMillis) throws InterruptedException, TimeoutException {
+            try {
+                return this.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * The response or error posted by the function process for an invocation.
+     */
+    public static class InvocationResult {
+        private final boolean error;
+        private final byte[] body;
+        private final String responseMode;
+        private final String errorType;
+        private final String errorBody;
+        private long latencyNanos;
+        private long processingNanos;
+        private long firstByteNanos;
+
+        private InvocationResult(boolean error, byte[] body, String responseMode, String errorType,
+                                 String errorBody) {
+            this.error = error;
+            this.body = body;
+            this.responseMode = responseMode;
+            this.errorType = errorType;
+            this.errorBody = errorBody;
+        }
+
+        public boolean isError() {
+            return error;
+        }
+
+        public String getBody() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns the body as posted by the function process, for results which are not text.
+         *
+         * @return the raw body
+         */
+        public byte[] getBodyBytes() {
+            return body.clone();
+        }
+
+        /**
+         * Returns the response mode requested by the function process.
+         *
+         * @return value of the response mode header, or null for buffered responses
+         */
+        public String getResponseMode() {
+            return responseMode;
+        }
+
+        /**
+         * Returns the error type reported by the function process.
+         *
+         * @return value of the error type header or trailer, or null if it was not set
+         */
+        public String getErrorType() {
+            return errorType;
+        }
+
+        /**
+         * Returns the error body sent in the trailers of a streamed response which failed after it started.
+         *
+         * @return the decoded error body, or null if it was not sent
+         */
+        public String getErrorBody() {
+            return errorBody;
+        }
+
+        /**
+         * Returns the time from queuing the event to receiving the result.
+         *
+         * @return latency in nanoseconds
+         */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        /**
+         * Returns the time from handing out the event to receiving the result.
+         *
+         * @return processing time in nanoseconds
+         */
+        public long getProcessingNanos() {
+            return processingNanos;
+        }
+
+        /**
+         * Returns the time from handing out the event to receiving the first byte of the result.
+         *
+         * @return time to first byte in nanoseconds, or 0 if the result was empty
+         */
+        public long getFirstByteNanos() {
+            return firstByteNanos;
+        }
+    }
+}
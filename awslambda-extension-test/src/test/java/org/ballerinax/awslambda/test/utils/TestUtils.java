@@ -32,8 +32,15 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * Test utility class.
@@ -75,7 +82,22 @@ public class TestUtils {
      */
     public static ProcessOutput compileBallerinaFile(Path sourceDirectory, String fileName) throws InterruptedException,
             IOException {
-        
+        return compileBallerinaFile(sourceDirectory, fileName, Collections.emptyMap());
+    }
+
+    /**
+     * Compile a ballerina file in a given directory with additional environment variables.
+     *
+     * @param sourceDirectory Ballerina source directory
+     * @param fileName        Ballerina source file name
+     * @param env             environment variables of the compiler process
+     * @return Exit code
+     * @throws InterruptedException if an error occurs while compiling
+     * @throws IOException          if an error occurs while writing file
+     */
+    public static ProcessOutput compileBallerinaFile(Path sourceDirectory, String fileName, Map<String, String> env)
+            throws InterruptedException, IOException {
+
         Path ballerinaInternalLog = Paths.get(sourceDirectory.toAbsolutePath().toString(), "ballerina-internal.log");
         if (ballerinaInternalLog.toFile().exists()) {
             log.warn("Deleting already existing ballerina-internal.log file.");
@@ -86,6 +108,7 @@ public class TestUtils {
         log.info(COMPILING + sourceDirectory.normalize().resolve(fileName));
         log.debug(EXECUTING_COMMAND + pb.command());
         pb.directory(sourceDirectory.toFile());
+        pb.environment().putAll(env);
         Process process = pb.start();
         int exitCode = process.waitFor();
         
@@ -122,6 +145,94 @@ public class TestUtils {
         return po;
     }
     
+    /**
+     * Run a java process with the JVM that runs the tests.
+     *
+     * @param workingDirectory working directory of the process
+     * @param args             JVM options and arguments
+     * @param env              additional environment variables
+     * @return process output
+     * @throws InterruptedException if an error occurs while running the process
+     * @throws IOException          if an error occurs while reading the output
+     */
+    public static ProcessOutput runJava(Path workingDirectory, List<String> args, Map<String, String> env)
+            throws InterruptedException, IOException {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        List<String> command = new ArrayList<>();
+        command.add(java.toString());
+        command.addAll(args);
+        ProcessBuilder pb = new ProcessBuilder(command);
+        log.info(RUNNING + String.join(" ", pb.command()));
+        pb.directory(workingDirectory.toFile());
+        pb.environment().putAll(env);
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        String output = logOutput(process.getInputStream());
+        int exitCode = process.waitFor();
+
+        ProcessOutput po = new ProcessOutput();
+        log.info(EXIT_CODE + exitCode);
+        po.setExitCode(exitCode);
+        po.setStdOutput(output);
+        po.setErrOutput("");
+        return po;
+    }
+
+    /**
+     * Start a java process with the JVM that runs the tests, without waiting for it to exit.
+     *
+     * @param workingDirectory working directory of the process
+     * @param args             JVM options and arguments
+     * @param env              additional environment variables
+     * @param output           file to write the output of the process to
+     * @return the started process
+     * @throws IOException if an error occurs while starting the process
+     */
+    public static Process startJava(Path workingDirectory, List<String> args, Map<String, String> env, Path output)
+            throws IOException {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        List<String> command = new ArrayList<>();
+        command.add(java.toString());
+        command.addAll(args);
+        ProcessBuilder pb = new ProcessBuilder(command);
+        log.info(RUNNING + String.join(" ", pb.command()));
+        pb.directory(workingDirectory.toFile());
+        pb.environment().putAll(env);
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(output.toFile());
+        return pb.start();
+    }
+
+    /**
+     * Extracts a zip file, preserving the modification time of the entries.
+     *
+     * @param zipFile   zip file
+     * @param targetDir directory to extract to
+     * @throws IOException if an error occurs while extracting
+     */
+    public static void extractZip(Path zipFile, Path targetDir) throws IOException {
+        Path root = targetDir.toAbsolutePath().normalize();
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                Path target = root.resolve(entry.getName()).normalize();
+                if (!target.startsWith(root)) {
+                    throw new IOException("Invalid zip entry: " + entry.getName());
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                    continue;
+                }
+                Files.createDirectories(target.getParent());
+                try (InputStream in = zip.getInputStream(entry)) {
+                    Files.copy(in, target);
+                }
+                Files.setLastModifiedTime(target, entry.getLastModifiedTime());
+            }
+        }
+    }
+
     /**
      * Deletes a given directory.
      *
@@ -0,0 +1,19 @@
+import ballerina/http;
+import ballerina/system;
+
+// A minimal runtime loop with the default HTTP client configuration, which the Runtime API clients of the
+// runtime are benchmarked against. It echoes the events, like the echo handler of the deployment functions.
+
+const BASE_URL = "/2018-06-01/runtime/invocation/";
+
+public function main() returns error? {
+    http:Client clientEP = new("http://" + system:getEnv("AWS_LAMBDA_RUNTIME_API"));
+    while (true) {
+        http:Response resp = check clientEP->get(BASE_URL + "next");
+        string requestId = resp.getHeader("Lambda-Runtime-Aws-Request-Id");
+        json event = check resp.getJsonPayload();
+        http:Request req = new;
+        req.setJsonPayload(<@untainted> event);
+        _ = check clientEP->post(BASE_URL + <@untainted> requestId + "/response", req);
+    }
+}
@@ -9,7 +9,10 @@ public function echo(awslambda:Context ctx, json input) returns json {
    return input;
 }
 
-@awslambda:Function
+// The `jvmProfile` selects the JVM launch options of the Ballerina layer
+@awslambda:Function {
+    jvmProfile: "small"
+}
 public function uuid(awslambda:Context ctx, json input) returns json {
    return system:uuid();
 }
@@ -54,4 +57,11 @@ public function notifySES(awslambda:Context ctx,
 public function apigwRequest(awslambda:Context ctx, 
                              awslambda:APIGatewayProxyRequest request) {
     io:println("Path: ", request.path);
+}
+
+// `string` and `byte[]` events and results are passed as the raw
+// payload, without JSON parsing and serialization
+@awslambda:Function
+public function rawEcho(awslambda:Context ctx, byte[] input) returns byte[] {
+    return input;
 }
\ No newline at end of file
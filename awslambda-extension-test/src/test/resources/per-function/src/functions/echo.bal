@@ -0,0 +1,8 @@
+import ballerinax/awslambda;
+
+// Each handler is declared in its own source file, so that the zip of one
+// handler can leave out the code of the other.
+@awslambda:Function
+public function echo(awslambda:Context ctx, json input) returns json {
+    return input;
+}
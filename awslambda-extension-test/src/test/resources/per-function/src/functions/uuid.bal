@@ -0,0 +1,7 @@
+import ballerina/system;
+import ballerinax/awslambda;
+
+@awslambda:Function
+public function uuid(awslambda:Context ctx, json input) returns json {
+    return system:uuid();
+}
@@ -0,0 +1,302 @@
+import ballerina/lang.'string as strings;
+import ballerina/runtime;
+import ballerina/system;
+import ballerinax/awslambda;
+
+// Handlers invoked by the runtime tests against the local Runtime API.
+
+boolean initialized = false;
+int primedInvocations = 0;
+boolean checkpointed = false;
+boolean restored = false;
+int squareCalls = 0;
+// the outcome of the write of a handler which outlived its deadline
+string lateWrite = "";
+
+// closed records, so the fields they do not declare are dropped from the event before it is converted
+type SquareRequest record {|
+    int n;
+|};
+
+type Address record {|
+    string city;
+    string zip?;
+|};
+
+type LineItem record {|
+    string sku;
+    int quantity;
+|};
+
+type Purchase record {|
+    string id;
+    Address shipTo;
+    LineItem[] items;
+    string note?;
+|};
+
+// an open record, which keeps the fields it does not declare
+type Order record {
+    string id;
+};
+
+int connectionBuilds = 0;
+
+class Connection {
+    boolean open = true;
+}
+
+@awslambda:Init
+function setup() returns error? {
+    if (system:getEnv("FAIL_INIT") == "true") {
+        return error("Setup failed");
+    }
+    awslambda:registerResource("connection", function () returns any|error {
+        connectionBuilds += 1;
+        // slow enough for concurrent strands to wait for the same connection
+        runtime:sleep(100);
+        return new Connection();
+    }, function (any 'resource) returns error? {
+        if (!(<Connection> 'resource).open) {
+            return error("Connection closed");
+        }
+    });
+    initialized = true;
+}
+
+@awslambda:BeforeCheckpoint
+function beforeCheckpoint() returns error? {
+    checkpointed = true;
+}
+
+@awslambda:AfterRestore
+function afterRestore() returns error? {
+    if (system:getEnv("FAIL_RESTORE") == "true") {
+        return error("Restore failed");
+    }
+    restored = true;
+}
+
+@awslambda:Function {
+    batchItemConcurrency: 4
+}
+public function processMessage(awslambda:Context ctx, awslambda:SQSRecord message) returns error? {
+    if (message.body == "fail") {
+        return error("Failed to process " + message.messageId);
+    }
+}
+
+@awslambda:Function {
+    batchItemConcurrency: 4
+}
+public function processChange(awslambda:Context ctx, awslambda:DynamoDBRecord change) returns error? {
+    map<json>? newImage = change.dynamodb?.NewImage;
+    json failed = {S: "fail"};
+    if (newImage is map<json> && newImage["status"] == failed) {
+        return error("Failed to process " + change.dynamodb.SequenceNumber);
+    }
+}
+
+@awslambda:Function
+public function selectKinesisData(awslambda:Context ctx, awslambda:KinesisEvent event) returns json|error {
+    json[] values = [];
+    foreach awslambda:KinesisRecord kinesisRecord in event.Records {
+        // the data of the other records is never decoded
+        if (kinesisRecord.kinesis.partitionKey == "selected") {
+            byte[] data = check awslambda:getKinesisData(kinesisRecord);
+            values.push(check strings:fromBytes(data));
+        }
+    }
+    return values;
+}
+
+@awslambda:Function
+public function readKafkaValues(awslambda:Context ctx, awslambda:KafkaEvent event) returns json|error {
+    json[] values = [];
+    foreach awslambda:KafkaRecord[] partitionRecords in event.records {
+        foreach awslambda:KafkaRecord kafkaRecord in partitionRecords {
+            byte[]? value = check awslambda:getKafkaValue(kafkaRecord);
+            if (value is byte[]) {
+                values.push(check strings:fromBytes(value));
+            }
+        }
+    }
+    return values;
+}
+
+@awslambda:Function
+public function streamLines(awslambda:Context ctx, json event, awslambda:ResponseStream response) returns error? {
+    response.setContentType("text/plain");
+    int count = <int> check event.count;
+    foreach int i in 1 ... count {
+        check response.write("line " + i.toString() + "\n");
+        // spreads the chunks out, so the first chunk arrives well before the response completes
+        runtime:sleep(200);
+    }
+}
+
+@awslambda:Function
+public function streamThenFail(awslambda:Context ctx, json event, awslambda:ResponseStream response) returns error? {
+    check response.writeBytes("partial\n".toBytes());
+    return error("Stream failed");
+}
+
+@awslambda:Function
+public function writeAfterDeadline(awslambda:Context ctx, json event, awslambda:ResponseStream response)
+        returns error? {
+    json|error report = event.report;
+    if (report is boolean && report) {
+        // the timed out invocation may still be sleeping
+        foreach int i in 0 ..< 100 {
+            if (lateWrite != "") {
+                break;
+            }
+            runtime:sleep(50);
+        }
+        return response.write(lateWrite);
+    }
+    check response.write("before\n");
+    // ignores the cancellation of the request and outlives its deadline
+    while (ctx.getRemainingExecutionTime() > 0) {
+        runtime:sleep(50);
+    }
+    ctx.addDeferredTask(function () returns error? {
+    });
+    error? result = response.write("after\n");
+    lateWrite = result is error ? result.message() : "written";
+}
+
+@awslambda:Function
+public function sleepFor(awslambda:Context ctx, json event) returns json|error {
+    // ignores the cancellation of the request
+    runtime:sleep(<int> check event.sleepMs);
+    return "done";
+}
+
+@awslambda:Function
+public function awaitCancellation(awslambda:Context ctx, json event) returns json {
+    while (!ctx.isCancelled()) {
+        runtime:sleep(50);
+    }
+    return { cancelled: true, remainingMs: ctx.getRemainingExecutionTime() };
+}
+
+@awslambda:Function
+public function initState(awslambda:Context ctx, json event) returns json {
+    return { initialized: initialized };
+}
+
+@awslambda:Function
+public function deferWork(awslambda:Context ctx, json event) returns json|error {
+    int delayMs = <int> check event.delayMs;
+    ctx.addDeferredTask(function () returns error? {
+        runtime:sleep(delayMs);
+    });
+    return "accepted";
+}
+
+@awslambda:Function {
+    metrics: true
+}
+public function measuredEcho(awslambda:Context ctx, json event) returns json {
+    return event;
+}
+
+@awslambda:Function {
+    primingEvent: "{\"priming\": true}"
+}
+public function snapshotState(awslambda:Context ctx, json event) returns json {
+    if (ctx.getRequestId() == "priming") {
+        primedInvocations += 1;
+    }
+    return { primedInvocations: primedInvocations, checkpointed: checkpointed, restored: restored };
+}
+
+@awslambda:Function
+public function renderRows(awslambda:Context ctx, json event) returns awslambda:APIGatewayProxyResponse|error {
+    int rows = <int> check event.rows;
+    string body = "";
+    foreach int i in 0 ..< rows {
+        body += "row " + i.toString() + "\n";
+    }
+    // a field the proxy response does not declare, which is sent along
+    return { headers: { "Content-Type": "text/plain" }, body: body, cookies: ["rows=" + rows.toString()] };
+}
+
+@awslambda:Function
+public function renderLayout(awslambda:Context ctx, json event) returns awslambda:APIGatewayProxyResponse {
+    // a field which can not be sent as JSON
+    return { body: "rows", layout: xml `<rows/>` };
+}
+
+@awslambda:Function {
+    cacheTtlSeconds: 1
+}
+public function cachedSquare(awslambda:Context ctx, SquareRequest request) returns json {
+    squareCalls += 1;
+    awslambda:ResultCacheStatistics stats = awslambda:getResultCacheStatistics();
+    return { square: request.n * request.n, calls: squareCalls, hits: stats.hits, misses: stats.misses };
+}
+
+@awslambda:Function
+public function describePurchase(awslambda:Context ctx, Purchase purchase) returns json {
+    int quantity = 0;
+    foreach LineItem item in purchase.items {
+        quantity += item.quantity;
+    }
+    // the number of fields of the nested record shows whether the undeclared fields were dropped
+    return { id: purchase.id, city: purchase.shipTo.city, zip: purchase.shipTo?.zip ?: "none",
+             shipToFields: purchase.shipTo.keys().length(), quantity: quantity, note: purchase?.note ?: "none" };
+}
+
+@awslambda:Function
+public function describeOrder(awslambda:Context ctx, Order orderEvent) returns json {
+    anydata channel = orderEvent["channel"];
+    return { id: orderEvent.id, channel: channel is string ? channel : "none", fields: orderEvent.keys().length() };
+}
+
+@awslambda:Function
+public function textEcho(awslambda:Context ctx, string input) returns string {
+    return input;
+}
+
+@awslambda:Function
+public function binaryEcho(awslambda:Context ctx, byte[] input) returns byte[] {
+    return input;
+}
+
+@awslambda:Function
+public function useConnection(awslambda:Context ctx, json event) returns json|error {
+    int strands = <int> check event.strands;
+    future<any|error>[] uses = [];
+    foreach int i in 0 ..< strands {
+        uses.push(start ctx.getResource("connection", Connection));
+    }
+    foreach future<any|error> use in uses {
+        _ = check wait use;
+    }
+    Connection connection = <Connection> check ctx.getResource("connection", Connection);
+    json|error close = event.close;
+    if (close is boolean && close) {
+        connection.open = false;
+        return error("Connection lost");
+    }
+    return { builds: connectionBuilds };
+}
+
+@awslambda:Function
+public function useSession(awslambda:Context ctx, json event) returns json|error {
+    awslambda:registerResource("session", function () returns any|error {
+        // gets the connection on another strand while the session is being created
+        future<any|error> connection = start ctx.getResource("connection", Connection);
+        return <Connection> check wait connection;
+    });
+    Connection session = <Connection> check ctx.getResource("session", Connection);
+    return { open: session.open, builds: connectionBuilds };
+}
+
+@awslambda:Function
+public function useWrongType(awslambda:Context ctx, json event) returns json|error {
+    any|error session = ctx.getResource("connection", Order);
+    return { mismatch: session is error };
+}
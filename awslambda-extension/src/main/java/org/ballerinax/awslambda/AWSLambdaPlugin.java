@@ -30,6 +30,7 @@ import org.ballerinalang.model.tree.AnnotationAttachmentNode;
 import org.ballerinalang.model.tree.FunctionNode;
 import org.ballerinalang.model.tree.IdentifierNode;
 import org.ballerinalang.model.tree.PackageNode;
+import org.ballerinalang.model.tree.expressions.RecordLiteralNode;
 import org.ballerinalang.util.diagnostic.Diagnostic;
 import org.ballerinalang.util.diagnostic.DiagnosticLog;
 import org.wso2.ballerinalang.compiler.desugar.ASTBuilderUtil;
@@ -41,9 +42,14 @@ import org.wso2.ballerinalang.compiler.semantics.model.symbols.BPackageSymbol;
 import org.wso2.ballerinalang.compiler.semantics.model.symbols.BSymbol;
 import org.wso2.ballerinalang.compiler.semantics.model.symbols.BVarSymbol;
 import org.wso2.ballerinalang.compiler.semantics.model.symbols.Symbols;
+import org.wso2.ballerinalang.compiler.semantics.model.symbols.SymTag;
+import org.wso2.ballerinalang.compiler.semantics.model.types.BArrayType;
 import org.wso2.ballerinalang.compiler.semantics.model.types.BInvokableType;
+import org.wso2.ballerinalang.compiler.semantics.model.types.BMapType;
 import org.wso2.ballerinalang.compiler.semantics.model.types.BNilType;
+import org.wso2.ballerinalang.compiler.semantics.model.types.BRecordType;
 import org.wso2.ballerinalang.compiler.semantics.model.types.BType;
+import org.wso2.ballerinalang.compiler.semantics.model.types.BUnionType;
 import org.wso2.ballerinalang.compiler.tree.BLangAnnotationAttachment;
 import org.wso2.ballerinalang.compiler.tree.BLangBlockFunctionBody;
 import org.wso2.ballerinalang.compiler.tree.BLangFunction;
@@ -55,33 +61,51 @@ import org.wso2.ballerinalang.compiler.tree.BLangSimpleVariable;
 import org.wso2.ballerinalang.compiler.tree.expressions.BLangExpression;
 import org.wso2.ballerinalang.compiler.tree.expressions.BLangInvocation;
 import org.wso2.ballerinalang.compiler.tree.expressions.BLangLiteral;
+import org.wso2.ballerinalang.compiler.tree.expressions.BLangRecordLiteral;
 import org.wso2.ballerinalang.compiler.tree.expressions.BLangSimpleVarRef;
 import org.wso2.ballerinalang.compiler.tree.expressions.BLangTypedescExpr;
+import org.wso2.ballerinalang.compiler.tree.statements.BLangBlockStmt;
 import org.wso2.ballerinalang.compiler.tree.statements.BLangExpressionStmt;
+import org.wso2.ballerinalang.compiler.tree.statements.BLangIf;
 import org.wso2.ballerinalang.compiler.tree.statements.BLangReturn;
 import org.wso2.ballerinalang.compiler.tree.types.BLangType;
 import org.wso2.ballerinalang.compiler.tree.types.BLangUnionTypeNode;
 import org.wso2.ballerinalang.compiler.util.CompilerContext;
 import org.wso2.ballerinalang.compiler.util.Name;
+import org.wso2.ballerinalang.compiler.util.diagnotic.BDiagnosticSource;
 import org.wso2.ballerinalang.compiler.util.diagnotic.DiagnosticPos;
 import org.wso2.ballerinalang.util.Flags;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.net.URI;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipOutputStream;
 
 /**
  * Compiler plugin to process AWS lambda function annotations.
@@ -91,19 +115,119 @@ public class AWSLambdaPlugin extends AbstractCompilerPlugin {
 
     private static final String LAMBDA_OUTPUT_ZIP_FILENAME = "aws-ballerina-lambda-functions.zip";
 
+    private static final String LAMBDA_FUNCTION_ZIP_FILENAME_PREFIX = "aws-ballerina-lambda-";
+
+    // generated functions are placed in their own compilation unit, so they are compiled to a separate class
+    // from the user code
+    private static final String LAMBDA_ENTRY_CUNIT_NAME = "__awslambda_entry.bal";
+
     private static final String AWS_LAMBDA_PACKAGE_NAME = "awslambda";
 
     private static final String AWS_LAMBDA_PACKAGE_ORG = "ballerinax";
 
     private static final String LAMBDA_PROCESS_FUNCTION_NAME = "__process";
 
-    private static final String LAMBDA_REG_FUNCTION_NAME = "__register";
+    private static final String LAMBDA_INVALID_HANDLER_FUNCTION_NAME = "__invalidHandler";
+
+    private static final String LAMBDA_IS_HANDLER_FUNCTION_NAME = "__isHandler";
+
+    private static final String LAMBDA_INIT_FUNCTION_NAME = "__runInit";
+
+    private static final String FUNCTION_ANNOTATION_NAME = "Function";
+
+    private static final String INIT_ANNOTATION_NAME = "Init";
+
+    private static final String LAMBDA_BEFORE_CHECKPOINT_FUNCTION_NAME = "__registerBeforeCheckpoint";
+
+    private static final String LAMBDA_AFTER_RESTORE_FUNCTION_NAME = "__registerAfterRestore";
+
+    private static final String BEFORE_CHECKPOINT_ANNOTATION_NAME = "BeforeCheckpoint";
+
+    private static final String AFTER_RESTORE_ANNOTATION_NAME = "AfterRestore";
+
+    private static final String LAMBDA_JSON_PARSER_FUNCTION_NAME = "__jsonEventParser";
+
+    private static final String LAMBDA_RECORD_PARSER_FUNCTION_NAME = "__recordEventParser";
+
+    private static final String LAMBDA_TEXT_PARSER_FUNCTION_NAME = "__textEventParser";
+
+    private static final String LAMBDA_BINARY_PARSER_FUNCTION_NAME = "__binaryEventParser";
+
+    private static final String LAMBDA_EVENT_PARSER_TYPE_NAME = "EventParser";
+
+    private static final String LAMBDA_JSON_WRITER_FUNCTION_NAME = "__jsonResponseWriter";
+
+    private static final String LAMBDA_TEXT_WRITER_FUNCTION_NAME = "__textResponseWriter";
+
+    private static final String LAMBDA_BINARY_WRITER_FUNCTION_NAME = "__binaryResponseWriter";
+
+    private static final String LAMBDA_PROXY_WRITER_FUNCTION_NAME = "__proxyResponseWriter";
+
+    private static final String LAMBDA_PROXY_RESPONSE_TYPE_NAME = "APIGatewayProxyResponse";
+
+    private static final String LAMBDA_RESPONSE_WRITER_TYPE_NAME = "ResponseWriter";
+
+    private static final String LAMBDA_FUNCTION_TYPE_NAME = "FunctionType";
+
+    private static final String LAMBDA_RESPONSE_STREAM_TYPE_NAME = "ResponseStream";
+
+    private static final String LAMBDA_RESPONSE_STREAM_FUNCTION_NAME = "__responseStream";
+
+    private static final String BATCH_ITEM_CONCURRENCY_FIELD = "batchItemConcurrency";
+
+    private static final String METRICS_FIELD = "metrics";
+
+    private static final String JVM_PROFILE_FIELD = "jvmProfile";
+
+    private static final List<String> JVM_PROFILES = Arrays.asList("auto", "small", "medium", "large", "none");
+
+    private static final String JVM_PROFILES_EXT = ".profiles";
+
+    private static final String JAR_SHA256_EXT = ".sha256";
+
+    private static final String PRIMING_EVENT_FIELD = "primingEvent";
+
+    private static final String LAMBDA_SET_PRIMING_EVENT_FUNCTION_NAME = "__setPrimingEvent";
+
+    private static final String LAMBDA_ENABLE_METRICS_FUNCTION_NAME = "__enableMetrics";
+
+    private static final String CACHE_TTL_FIELD = "cacheTtlSeconds";
+
+    private static final String LAMBDA_ENABLE_RESULT_CACHE_FUNCTION_NAME = "__enableResultCache";
 
     private static final String MAIN_FUNC_NAME = "main";
 
+    private static final String CDS_ENABLED_ENV = "BALLERINA_AWSLAMBDA_CDS";
+
+    private static final String CDS_LAYER_ZIP_SUFFIX = "-cds.zip";
+
+    private static final String SHRINK_ENABLED_ENV = "BALLERINA_AWSLAMBDA_SHRINK";
+
+    private static final String SHRINK_KEEP_ENV = "BALLERINA_AWSLAMBDA_SHRINK_KEEP";
+
+    private static final String ZIP_COMPRESSION_ENV = "BALLERINA_AWSLAMBDA_ZIP_COMPRESSION";
+
+    private static final String ARTIFACTS_ENV = "BALLERINA_AWSLAMBDA_ARTIFACTS";
+
+    private static final String FUNCTION_ARTIFACTS = "function";
+
+    private static final String PACKAGING_THREADS_ENV = "BALLERINA_AWSLAMBDA_PACKAGING_THREADS";
+
+    private static final String HANDLER_ENV = "_HANDLER";
+
+    private static final List<String> PACKAGING_OPTION_ENVS = Arrays.asList(CDS_ENABLED_ENV,
+            CDSArchiveGenerator.JAVA_HOME_ENV, SHRINK_ENABLED_ENV, SHRINK_KEEP_ENV, ZIP_COMPRESSION_ENV);
+
+    // the runtime and the awslambda module load classes reflectively, so they are never shrunk
+    private static final List<String> SHRINK_KEEP_PREFIXES = Arrays.asList("org/ballerinalang/jvm/",
+            "io/ballerina/runtime/", "ballerinax/awslambda/");
+
     private static final PrintStream OUT = System.out;
 
-    private static List<String> generatedFuncs = new ArrayList<>();
+    // handler names of each compiled module and the JVM profile of their annotation, if any, until its artifacts
+    // are packaged, the compiler creates separate plugin instances for compiling a module and for its code
+    // generation, and modules can be compiled concurrently
+    private static final Map<PackageID, Map<String, String>> generatedFuncs = new ConcurrentHashMap<>();
 
     private DiagnosticLog dlog;
 
@@ -131,11 +255,23 @@ public class AWSLambdaPlugin extends AbstractCompilerPlugin {
     @Override
     public void process(PackageNode packageNode) {
         List<BLangFunction> lambdaFunctions = new ArrayList<>();
+        List<BLangFunction> initFunctions = new ArrayList<>();
+        List<BLangFunction> beforeCheckpointFunctions = new ArrayList<>();
+        List<BLangFunction> afterRestoreFunctions = new ArrayList<>();
         for (FunctionNode fn : packageNode.getFunctions()) {
             BLangFunction bfn = (BLangFunction) fn;
             if (this.isLambdaFunction(bfn)) {
                 lambdaFunctions.add(bfn);
             }
+            if (this.isHookFunction(bfn, INIT_ANNOTATION_NAME)) {
+                initFunctions.add(bfn);
+            }
+            if (this.isHookFunction(bfn, BEFORE_CHECKPOINT_ANNOTATION_NAME)) {
+                beforeCheckpointFunctions.add(bfn);
+            }
+            if (this.isHookFunction(bfn, AFTER_RESTORE_ANNOTATION_NAME)) {
+                afterRestoreFunctions.add(bfn);
+            }
         }
         BLangPackage myPkg = (BLangPackage) packageNode;
         if (!lambdaFunctions.isEmpty()) {
@@ -144,29 +280,70 @@ public class AWSLambdaPlugin extends AbstractCompilerPlugin {
                 // this symbol will always be there, since the import is needed to add the annotation
                 throw new BallerinaException("AWS Lambda package symbol cannot be found");
             }
+            DiagnosticPos entryPos = this.createEntryPos(myPkg);
             BLangFunction epFunc = this.extractMainFunction(myPkg);
             if (epFunc == null) {
                 // main function is not there, lets create our own one
-                epFunc = this.createFunction(myPkg.pos, MAIN_FUNC_NAME, myPkg);
+                epFunc = this.createFunction(entryPos, MAIN_FUNC_NAME, myPkg);
                 packageNode.addFunction(epFunc);
             } else {
-                // clear out the existing statements
+                // clear out the existing statements, and move it to the generated compilation unit
                 ((BLangBlockFunctionBody) epFunc.body).stmts.clear();
+                epFunc.pos = entryPos;
+                epFunc.symbol.pos = entryPos;
             }
             BLangBlockFunctionBody body = (BLangBlockFunctionBody) epFunc.body;
+            // the init hooks run in the init phase, before the first event is polled, and the checkpoint hooks
+            // are registered to run around the snapshot of a SnapStart function instance
+            this.addHookStmts(body, entryPos, lambdaPkgSymbol, initFunctions, LAMBDA_INIT_FUNCTION_NAME);
+            this.addHookStmts(body, entryPos, lambdaPkgSymbol, beforeCheckpointFunctions,
+                    LAMBDA_BEFORE_CHECKPOINT_FUNCTION_NAME);
+            this.addHookStmts(body, entryPos, lambdaPkgSymbol, afterRestoreFunctions,
+                    LAMBDA_AFTER_RESTORE_FUNCTION_NAME);
+            // dispatch to the handler selected with _HANDLER, the event parser of the other handlers is
+            // never created and their proxies are never loaded
+            BLangIf lastDispatch = null;
+            Map<String, String> handlers = new LinkedHashMap<>();
             for (BLangFunction lambdaFunc : lambdaFunctions) {
-                this.addRegisterCall(myPkg.pos, lambdaPkgSymbol, body, lambdaFunc, myPkg);
-                AWSLambdaPlugin.generatedFuncs.add(lambdaFunc.name.value);
+                BLangIf dispatch = this.createDispatchStmt(entryPos, lambdaPkgSymbol, lambdaFunc, myPkg);
+                if (lastDispatch == null) {
+                    body.addStatement(dispatch);
+                } else {
+                    lastDispatch.elseStmt = dispatch;
+                }
+                lastDispatch = dispatch;
+                handlers.put(lambdaFunc.name.value,
+                        (String) this.getFunctionConfiguration(lambdaFunc).get(JVM_PROFILE_FIELD));
             }
-            this.addProcessCall(myPkg.pos, lambdaPkgSymbol, body);
+            AWSLambdaPlugin.generatedFuncs.put(myPkg.packageID, Collections.unmodifiableMap(handlers));
+            BLangBlockStmt invalidHandlerBlock = ASTBuilderUtil.createBlockStmt(entryPos);
+            invalidHandlerBlock.addStatement(this.createInvocationStmt(entryPos, this.createInvocationNode(
+                    lambdaPkgSymbol, LAMBDA_INVALID_HANDLER_FUNCTION_NAME, new ArrayList<>(0))));
+            lastDispatch.elseStmt = invalidHandlerBlock;
+        }
+    }
+
+    private void addHookStmts(BLangBlockFunctionBody body, DiagnosticPos pos, BPackageSymbol lamdaPkgSymbol,
+                              List<BLangFunction> hookFunctions, String lambdaFunctionName) {
+        for (BLangFunction hookFunc : hookFunctions) {
+            List<BLangExpression> hookExprs = new ArrayList<>();
+            hookExprs.add(this.createStringLiteral(pos, hookFunc.name.value));
+            hookExprs.add(this.createVariableRef(pos, hookFunc.symbol));
+            body.addStatement(this.createInvocationStmt(pos, this.createInvocationNode(lamdaPkgSymbol,
+                    lambdaFunctionName, hookExprs)));
         }
     }
 
+    private DiagnosticPos createEntryPos(BLangPackage myPkg) {
+        return new DiagnosticPos(new BDiagnosticSource(myPkg.packageID, LAMBDA_ENTRY_CUNIT_NAME), 1, 1, 1, 1);
+    }
+
     private String generateProxyFunctionName(BLangFunction targetFunc) {
         return "__func_proxy__" + targetFunc.name.value;
     }
 
-    private BLangFunction createProxyFunction(DiagnosticPos pos, BLangPackage myPkg, BLangFunction targetFunc) {
+    private BLangFunction createProxyFunction(DiagnosticPos pos, BPackageSymbol lamdaPkgSymbol, BLangPackage myPkg,
+                                              BLangFunction targetFunc) {
         List<String> paramNames = new ArrayList<>();
         List<BType> paramTypes = new ArrayList<>();
         paramNames.add(targetFunc.requiredParams.get(0).name.value);
@@ -178,7 +355,18 @@ public class AWSLambdaPlugin extends AbstractCompilerPlugin {
                 paramTypes, retType, myPkg);
         BLangSimpleVarRef arg1 = this.createVariableRef(pos, func.requiredParams.get(0).symbol);
         BLangSimpleVarRef arg2 = this.createVariableRef(pos, func.requiredParams.get(1).symbol);
-        BLangInvocation inv = this.createInvocationNode(targetFunc.symbol, arg1, arg2);
+        BLangInvocation inv;
+        if (isStreamingFunction(targetFunc)) {
+            // streaming handlers get the response stream of the invocation as the third argument
+            List<BLangExpression> streamExprs = new ArrayList<>();
+            streamExprs.add(this.createVariableRef(pos, func.requiredParams.get(0).symbol));
+            BLangInvocation arg3 = this.createInvocationNode(lamdaPkgSymbol, LAMBDA_RESPONSE_STREAM_FUNCTION_NAME,
+                    streamExprs);
+            arg3.type = lamdaPkgSymbol.scope.lookup(new Name(LAMBDA_RESPONSE_STREAM_TYPE_NAME)).symbol.type;
+            inv = this.createInvocationNode(targetFunc.symbol, arg1, arg2, arg3);
+        } else {
+            inv = this.createInvocationNode(targetFunc.symbol, arg1, arg2);
+        }
         BLangReturn ret = new BLangReturn();
         ret.pos = pos;
         ret.type = retType.type;
@@ -207,18 +395,222 @@ public class AWSLambdaPlugin extends AbstractCompilerPlugin {
         return null;
     }
 
-    private void addRegisterCall(DiagnosticPos pos, BPackageSymbol lamdaPkgSymbol, BLangBlockFunctionBody blockStmt,
-                                 BLangFunction targetFunc, BLangPackage myPkg) {
-        BLangFunction proxyFunc = createProxyFunction(pos, myPkg, targetFunc);
+    private BLangIf createDispatchStmt(DiagnosticPos pos, BPackageSymbol lamdaPkgSymbol, BLangFunction targetFunc,
+                                       BLangPackage myPkg) {
+        BLangFunction proxyFunc = createProxyFunction(pos, lamdaPkgSymbol, myPkg, targetFunc);
         myPkg.addFunction(proxyFunc);
+        BLangExpression funcExpr = this.createVariableRef(pos, proxyFunc.symbol);
+        BType eventType = getEventType(targetFunc);
+        BType returnType = targetFunc.returnTypeNode.type;
+        Object batchItemConcurrency = this.getFunctionConfiguration(targetFunc).get(BATCH_ITEM_CONCURRENCY_FIELD);
+        if (batchItemConcurrency != null) {
+            // record level handlers are wrapped in a batch handler, which takes the batch event and returns the
+            // batch item failures
+            String[] batch = getBatchEvent(eventType);
+            List<BLangExpression> batchExprs = new ArrayList<>();
+            batchExprs.add(funcExpr);
+            batchExprs.add(this.createIntLiteral(pos, (Long) batchItemConcurrency));
+            BLangInvocation batchInv = this.createInvocationNode(lamdaPkgSymbol, batch[1], batchExprs);
+            batchInv.type = lamdaPkgSymbol.scope.lookup(new Name(LAMBDA_FUNCTION_TYPE_NAME)).symbol.type;
+            funcExpr = batchInv;
+            eventType = lamdaPkgSymbol.scope.lookup(new Name(batch[0])).symbol.type;
+            returnType = symTable.jsonType;
+        }
         List<BLangExpression> exprs = new ArrayList<>();
-        exprs.add(this.createStringLiteral(pos, targetFunc.name.value));
-        exprs.add(this.createVariableRef(pos, proxyFunc.symbol));
-        exprs.add(this.createTypeDescExpr(pos, getEventType(targetFunc)));
-        BLangInvocation inv = this.createInvocationNode(lamdaPkgSymbol, LAMBDA_REG_FUNCTION_NAME, exprs);
-        BLangExpressionStmt stmt = new BLangExpressionStmt(inv);
-        stmt.pos = pos;
-        blockStmt.addStatement(stmt);
+        exprs.add(funcExpr);
+        exprs.add(this.createEventParserExpr(pos, lamdaPkgSymbol, eventType));
+        exprs.add(this.createResponseWriterExpr(lamdaPkgSymbol, returnType));
+        BLangInvocation processInv = this.createInvocationNode(lamdaPkgSymbol, LAMBDA_PROCESS_FUNCTION_NAME, exprs);
+        BLangBlockStmt ifBody = ASTBuilderUtil.createBlockStmt(pos);
+        if (Boolean.TRUE.equals(this.getFunctionConfiguration(targetFunc).get(METRICS_FIELD))) {
+            ifBody.addStatement(this.createInvocationStmt(pos, this.createInvocationNode(lamdaPkgSymbol,
+                    LAMBDA_ENABLE_METRICS_FUNCTION_NAME, new ArrayList<>(0))));
+        }
+        Object cacheTtl = this.getFunctionConfiguration(targetFunc).get(CACHE_TTL_FIELD);
+        if (cacheTtl != null) {
+            // the cache keys on the same fields the record event parser keeps
+            List<BLangExpression> cacheExprs = new ArrayList<>();
+            cacheExprs.add(this.createIntLiteral(pos, (Long) cacheTtl));
+            cacheExprs.add(this.createStringLiteral(pos, this.isClosedRecord(eventType) ?
+                    this.getFieldProjection((BRecordType) eventType, new HashSet<>()) : ""));
+            ifBody.addStatement(this.createInvocationStmt(pos, this.createInvocationNode(lamdaPkgSymbol,
+                    LAMBDA_ENABLE_RESULT_CACHE_FUNCTION_NAME, cacheExprs)));
+        }
+        Object primingEvent = this.getFunctionConfiguration(targetFunc).get(PRIMING_EVENT_FIELD);
+        if (primingEvent != null) {
+            List<BLangExpression> primingExprs = new ArrayList<>();
+            primingExprs.add(this.createStringLiteral(pos, (String) primingEvent));
+            ifBody.addStatement(this.createInvocationStmt(pos, this.createInvocationNode(lamdaPkgSymbol,
+                    LAMBDA_SET_PRIMING_EVENT_FUNCTION_NAME, primingExprs)));
+        }
+        ifBody.addStatement(this.createInvocationStmt(pos, processInv));
+        List<BLangExpression> isHandlerExprs = new ArrayList<>();
+        isHandlerExprs.add(this.createStringLiteral(pos, targetFunc.name.value));
+        BLangInvocation isHandlerInv = this.createInvocationNode(lamdaPkgSymbol, LAMBDA_IS_HANDLER_FUNCTION_NAME,
+                isHandlerExprs);
+        isHandlerInv.type = symTable.booleanType;
+        BLangIf ifStmt = (BLangIf) TreeBuilder.createIfElseStatementNode();
+        ifStmt.pos = pos;
+        ifStmt.expr = isHandlerInv;
+        ifStmt.body = ifBody;
+        return ifStmt;
+    }
+
+    /**
+     * Creates the expression which selects the event parser for an event type. String and byte array events
+     * are the raw payload, JSON events are passed to the handler as is, and other events are converted from
+     * the payload. The fields which a closed record event type does not declare are dropped before the
+     * conversion, which would fail on them, while open records keep them.
+     */
+    private BLangInvocation createEventParserExpr(DiagnosticPos pos, BPackageSymbol lamdaPkgSymbol,
+                                                  BType eventType) {
+        BLangInvocation inv;
+        if (eventType.tag == TypeTags.STRING_TAG) {
+            inv = this.createInvocationNode(lamdaPkgSymbol, LAMBDA_TEXT_PARSER_FUNCTION_NAME, new ArrayList<>(0));
+        } else if (this.isByteArray(eventType)) {
+            inv = this.createInvocationNode(lamdaPkgSymbol, LAMBDA_BINARY_PARSER_FUNCTION_NAME, new ArrayList<>(0));
+        } else if (this.isJsonCompatible(eventType)) {
+            inv = this.createInvocationNode(lamdaPkgSymbol, LAMBDA_JSON_PARSER_FUNCTION_NAME, new ArrayList<>(0));
+        } else {
+            List<BLangExpression> exprs = new ArrayList<>();
+            exprs.add(this.createTypeDescExpr(pos, eventType));
+            String fields = this.isClosedRecord(eventType) ?
+                    this.getFieldProjection((BRecordType) eventType, new HashSet<>()) : "";
+            exprs.add(this.createStringLiteral(pos, fields));
+            inv = this.createInvocationNode(lamdaPkgSymbol, LAMBDA_RECORD_PARSER_FUNCTION_NAME, exprs);
+        }
+        inv.type = lamdaPkgSymbol.scope.lookup(new Name(LAMBDA_EVENT_PARSER_TYPE_NAME)).symbol.type;
+        return inv;
+    }
+
+    /**
+     * Creates the expression which selects the response writer for a return type. String and byte array
+     * results are sent as the raw payload, and the other results as JSON.
+     */
+    private BLangInvocation createResponseWriterExpr(BPackageSymbol lamdaPkgSymbol, BType returnType) {
+        BType payloadType = this.getRawPayloadType(returnType);
+        String writerFunctionName = LAMBDA_JSON_WRITER_FUNCTION_NAME;
+        if (this.isProxyResponse(returnType)) {
+            writerFunctionName = LAMBDA_PROXY_WRITER_FUNCTION_NAME;
+        } else if (payloadType != null && payloadType.tag == TypeTags.STRING_TAG) {
+            writerFunctionName = LAMBDA_TEXT_WRITER_FUNCTION_NAME;
+        } else if (payloadType != null) {
+            writerFunctionName = LAMBDA_BINARY_WRITER_FUNCTION_NAME;
+        }
+        BLangInvocation inv = this.createInvocationNode(lamdaPkgSymbol, writerFunctionName, new ArrayList<>(0));
+        inv.type = lamdaPkgSymbol.scope.lookup(new Name(LAMBDA_RESPONSE_WRITER_TYPE_NAME)).symbol.type;
+        return inv;
+    }
+
+    /**
+     * Returns the raw payload type of a return type, which is string or byte[] optionally in a union with
+     * error, or null if the result is JSON.
+     */
+    private BType getRawPayloadType(BType returnType) {
+        List<BType> payloadTypes = this.getPayloadTypes(returnType);
+        if (payloadTypes.size() == 1 && (payloadTypes.get(0).tag == TypeTags.STRING_TAG ||
+                this.isByteArray(payloadTypes.get(0)))) {
+            return payloadTypes.get(0);
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether a return type is an awslambda:APIGatewayProxyResponse optionally in a union with error.
+     */
+    private boolean isProxyResponse(BType returnType) {
+        List<BType> payloadTypes = this.getPayloadTypes(returnType);
+        return payloadTypes.size() == 1 && isLambdaType(payloadTypes.get(0), LAMBDA_PROXY_RESPONSE_TYPE_NAME);
+    }
+
+    private List<BType> getPayloadTypes(BType returnType) {
+        List<BType> payloadTypes = new ArrayList<>();
+        if (returnType instanceof BUnionType) {
+            payloadTypes.addAll(((BUnionType) returnType).getMemberTypes());
+        } else {
+            payloadTypes.add(returnType);
+        }
+        payloadTypes.removeIf(type -> type.tag == TypeTags.ERROR_TAG);
+        return payloadTypes;
+    }
+
+    private boolean isByteArray(BType type) {
+        return type instanceof BArrayType && ((BArrayType) type).eType.tag == TypeTags.BYTE_TAG;
+    }
+
+    private boolean isJsonCompatible(BType type) {
+        if (type.tag == TypeTags.JSON_TAG || type.tag == TypeTags.ANYDATA_TAG) {
+            return true;
+        }
+        // JSON objects are parsed as map<json> values
+        return type instanceof BMapType && ((BMapType) type).constraint.tag == TypeTags.JSON_TAG;
+    }
+
+    /**
+     * Returns whether a type is a closed record without a rest field, which cannot hold undeclared fields.
+     */
+    private boolean isClosedRecord(BType type) {
+        return type instanceof BRecordType && ((BRecordType) type).sealed;
+    }
+
+    /**
+     * Returns the declared fields of a closed record type as a JSON object. The fields of closed record typed
+     * fields, and of arrays of closed records, are nested objects, and the other fields, including open
+     * records, are kept as a whole.
+     */
+    private String getFieldProjection(BRecordType recordType, Set<BType> visiting) {
+        visiting.add(recordType);
+        SortedMap<String, String> fields = new TreeMap<>();
+        for (Scope.ScopeEntry entry : recordType.tsymbol.scope.entries.values()) {
+            if ((entry.symbol.tag & SymTag.VARIABLE) != SymTag.VARIABLE) {
+                continue;
+            }
+            BType fieldType = this.getProjectedType(entry.symbol.type);
+            String fieldSpec = "true";
+            if (this.isClosedRecord(fieldType) && !visiting.contains(fieldType)) {
+                fieldSpec = this.getFieldProjection((BRecordType) fieldType, visiting);
+            }
+            fields.put(entry.symbol.name.value, fieldSpec);
+        }
+        visiting.remove(recordType);
+        StringBuilder projection = new StringBuilder("{");
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            if (projection.length() > 1) {
+                projection.append(',');
+            }
+            projection.append('"').append(field.getKey().replace("\\", "\\\\").replace("\"", "\\\""))
+                    .append("\":").append(field.getValue());
+        }
+        return projection.append('}').toString();
+    }
+
+    private BType getProjectedType(BType type) {
+        // optional fields and arrays are projected with the type of the values they contain
+        if (type instanceof BUnionType) {
+            BType valueType = null;
+            for (BType memberType : ((BUnionType) type).getMemberTypes()) {
+                if (memberType.tag == TypeTags.NULL_TAG) {
+                    continue;
+                }
+                if (valueType != null) {
+                    return type;
+                }
+                valueType = memberType;
+            }
+            return valueType == null ? type : this.getProjectedType(valueType);
+        }
+        if (type instanceof BArrayType) {
+            return this.getProjectedType(((BArrayType) type).eType);
+        }
+        return type;
+    }
+
+    private BLangLiteral createIntLiteral(DiagnosticPos pos, long value) {
+        BLangLiteral intLit = new BLangLiteral();
+        intLit.pos = pos;
+        intLit.value = value;
+        intLit.type = symTable.intType;
+        return intLit;
     }
 
     private BLangLiteral createStringLiteral(DiagnosticPos pos, String value) {
@@ -247,12 +639,10 @@ public class AWSLambdaPlugin extends AbstractCompilerPlugin {
         return varRef;
     }
 
-    private void addProcessCall(DiagnosticPos pos, BPackageSymbol lamdaPkgSymbol, BLangBlockFunctionBody blockStmt) {
-        BLangInvocation inv = this.createInvocationNode(lamdaPkgSymbol,
-                LAMBDA_PROCESS_FUNCTION_NAME, new ArrayList<>(0));
+    private BLangExpressionStmt createInvocationStmt(DiagnosticPos pos, BLangInvocation inv) {
         BLangExpressionStmt stmt = new BLangExpressionStmt(inv);
         stmt.pos = pos;
-        blockStmt.addStatement(stmt);
+        return stmt;
     }
 
     private BLangInvocation createInvocationNode(BPackageSymbol pkgSymbol, String functionName,
@@ -344,20 +734,191 @@ public class AWSLambdaPlugin extends AbstractCompilerPlugin {
                 dlog.logDiagnostic(Diagnostic.Kind.ERROR, fn.getPosition(),
                         "Invalid function signature for an AWS lambda function: " +
                                 bfn + ", it should be 'public function (awslambda:Context, anydata) returns " +
-                                "json|error'");
+                                "json|error', 'string|error' or 'byte[]|error', or 'public function " +
+                                "(awslambda:Context, anydata, awslambda:ResponseStream) returns error?'");
                 return false;
             } else {
-                return true;
+                return this.validateFunctionConfiguration(bfn);
             }
         } else {
             return false;
         }
     }
 
+    /**
+     * Returns the fields of the @awslambda:Function annotation value which are given as literals.
+     */
+    private Map<String, Object> getFunctionConfiguration(BLangFunction fn) {
+        Map<String, Object> config = new HashMap<>();
+        for (BLangAnnotationAttachment attachment : fn.annAttachments) {
+            if (!this.hasLambaAnnotation(attachment) || !(attachment.expr instanceof BLangRecordLiteral)) {
+                continue;
+            }
+            for (RecordLiteralNode.RecordField field : ((BLangRecordLiteral) attachment.expr).fields) {
+                if (!(field instanceof BLangRecordLiteral.BLangRecordKeyValueField)) {
+                    continue;
+                }
+                BLangRecordLiteral.BLangRecordKeyValueField keyValue =
+                        (BLangRecordLiteral.BLangRecordKeyValueField) field;
+                String key = null;
+                if (keyValue.key.expr instanceof BLangSimpleVarRef) {
+                    key = ((BLangSimpleVarRef) keyValue.key.expr).variableName.value;
+                } else if (keyValue.key.expr instanceof BLangLiteral) {
+                    key = String.valueOf(((BLangLiteral) keyValue.key.expr).value);
+                }
+                if (key != null) {
+                    config.put(key, keyValue.valueExpr instanceof BLangLiteral ?
+                            ((BLangLiteral) keyValue.valueExpr).value : keyValue.valueExpr);
+                }
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Returns whether the function has the given lifecycle hook annotation, @awslambda:Init,
+     * @awslambda:BeforeCheckpoint or @awslambda:AfterRestore, and a valid hook signature.
+     */
+    private boolean isHookFunction(BLangFunction fn, String annotationName) {
+        boolean hasHookAnnon = false;
+        for (BLangAnnotationAttachment attachment : fn.annAttachments) {
+            if (this.hasLambdaAnnotation(attachment, annotationName)) {
+                hasHookAnnon = true;
+                break;
+            }
+        }
+        if (!hasHookAnnon) {
+            return false;
+        }
+        if (!this.validateHookFunction(fn)) {
+            dlog.logDiagnostic(Diagnostic.Kind.ERROR, fn.getPosition(),
+                    "Invalid function signature for an AWS lambda @awslambda:" + annotationName + " function: " +
+                            fn + ", it should be 'function () returns error?'");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean validateHookFunction(BLangFunction fn) {
+        if (!fn.requiredParams.isEmpty() || fn.restParam != null) {
+            return false;
+        }
+        return isErrorOrNil(fn.returnTypeNode.type);
+    }
+
+    private static boolean isErrorOrNil(BType type) {
+        if (type.tag == TypeTags.ERROR_TAG || type.tag == TypeTags.NULL_TAG) {
+            return true;
+        }
+        if (!(type instanceof BUnionType)) {
+            return false;
+        }
+        for (BType memberType : ((BUnionType) type).getMemberTypes()) {
+            if (memberType.tag != TypeTags.ERROR_TAG && memberType.tag != TypeTags.NULL_TAG) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean validateFunctionConfiguration(BLangFunction fn) {
+        Map<String, Object> config = this.getFunctionConfiguration(fn);
+        if (config.containsKey(METRICS_FIELD) && !(config.get(METRICS_FIELD) instanceof Boolean)) {
+            dlog.logDiagnostic(Diagnostic.Kind.ERROR, fn.getPosition(), METRICS_FIELD + " of " + fn.name.value +
+                    " should be a boolean literal");
+            return false;
+        }
+        if (config.containsKey(JVM_PROFILE_FIELD) && !JVM_PROFILES.contains(config.get(JVM_PROFILE_FIELD))) {
+            dlog.logDiagnostic(Diagnostic.Kind.ERROR, fn.getPosition(), JVM_PROFILE_FIELD + " of " + fn.name.value +
+                    " should be one of the string literals " + String.join(", ", JVM_PROFILES));
+            return false;
+        }
+        if (config.containsKey(PRIMING_EVENT_FIELD)) {
+            if (!(config.get(PRIMING_EVENT_FIELD) instanceof String)) {
+                dlog.logDiagnostic(Diagnostic.Kind.ERROR, fn.getPosition(), PRIMING_EVENT_FIELD + " of " +
+                        fn.name.value + " should be a string literal");
+                return false;
+            }
+            if (isStreamingFunction(fn)) {
+                // a streaming handler writes to the response stream of a real invocation
+                dlog.logDiagnostic(Diagnostic.Kind.ERROR, fn.getPosition(), PRIMING_EVENT_FIELD + " of " +
+                        fn.name.value + " is not supported for streaming handlers");
+                return false;
+            }
+        }
+        if (config.containsKey(CACHE_TTL_FIELD)) {
+            Object ttl = config.get(CACHE_TTL_FIELD);
+            if (!(ttl instanceof Long) || (Long) ttl < 1) {
+                dlog.logDiagnostic(Diagnostic.Kind.ERROR, fn.getPosition(), CACHE_TTL_FIELD + " of " +
+                        fn.name.value + " should be a positive integer literal");
+                return false;
+            }
+            // only JSON results of JSON events are cached, which excludes streaming and batch handlers too
+            BType eventType = getEventType(fn);
+            if (isStreamingFunction(fn) || config.containsKey(BATCH_ITEM_CONCURRENCY_FIELD) ||
+                    eventType.tag == TypeTags.STRING_TAG || this.isByteArray(eventType) ||
+                    this.getRawPayloadType(fn.returnTypeNode.type) != null ||
+                    this.isProxyResponse(fn.returnTypeNode.type)) {
+                dlog.logDiagnostic(Diagnostic.Kind.ERROR, fn.getPosition(), CACHE_TTL_FIELD + " of " +
+                        fn.name.value + " requires a function with a JSON or record event and a json result");
+                return false;
+            }
+        }
+        if (config.containsKey(BATCH_ITEM_CONCURRENCY_FIELD)) {
+            Object concurrency = config.get(BATCH_ITEM_CONCURRENCY_FIELD);
+            if (!(concurrency instanceof Long) || (Long) concurrency < 1) {
+                dlog.logDiagnostic(Diagnostic.Kind.ERROR, fn.getPosition(), BATCH_ITEM_CONCURRENCY_FIELD +
+                        " of " + fn.name.value + " should be a positive integer literal");
+                return false;
+            }
+            if (isStreamingFunction(fn)) {
+                dlog.logDiagnostic(Diagnostic.Kind.ERROR, fn.getPosition(), BATCH_ITEM_CONCURRENCY_FIELD +
+                        " of " + fn.name.value + " is not supported for streaming handlers");
+                return false;
+            }
+            if (getBatchEvent(getEventType(fn)) == null) {
+                dlog.logDiagnostic(Diagnostic.Kind.ERROR, fn.getPosition(), BATCH_ITEM_CONCURRENCY_FIELD +
+                        " of " + fn.name.value + " requires an awslambda:SQSRecord or awslambda:DynamoDBRecord " +
+                        "event");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the batch event type and the batch handler function of a record level event type, or null if
+     * the event type is not a record of a batch event.
+     */
+    private static String[] getBatchEvent(BType eventType) {
+        if (eventType.tsymbol == null || !AWS_LAMBDA_PACKAGE_ORG.equals(eventType.tsymbol.pkgID.orgName.value) ||
+                !AWS_LAMBDA_PACKAGE_NAME.equals(eventType.tsymbol.pkgID.name.value)) {
+            return null;
+        }
+        switch (eventType.tsymbol.name.value) {
+            case "SQSRecord":
+                return new String[] { "SQSEvent", "__sqsBatchHandler" };
+            case "DynamoDBRecord":
+                return new String[] { "DynamoDBEvent", "__dynamoDBBatchHandler" };
+            default:
+                return null;
+        }
+    }
+
     private BType getEventType(BLangFunction node) {
         return node.requiredParams.get(1).type;
     }
 
+    private static boolean isStreamingFunction(BLangFunction node) {
+        return node.requiredParams.size() == 3;
+    }
+
+    private static boolean isLambdaType(BType type, String typeName) {
+        return type.tsymbol != null && type.tsymbol.name.value.equals(typeName) &&
+                type.tsymbol.pkgID.orgName.value.equals(AWS_LAMBDA_PACKAGE_ORG) &&
+                type.tsymbol.pkgID.name.value.equals(AWS_LAMBDA_PACKAGE_NAME);
+    }
+
     private boolean validateLambdaFunction(BLangFunction node) {
 
         List<BLangSimpleVariable> defaultableParams = new ArrayList<>();
@@ -368,7 +929,8 @@ public class AWSLambdaPlugin extends AbstractCompilerPlugin {
             }
         }
 
-        if (node.requiredParams.size() != 2 || defaultableParams.size() > 0 || node.restParam != null) {
+        int paramCount = node.requiredParams.size();
+        if ((paramCount != 2 && paramCount != 3) || defaultableParams.size() > 0 || node.restParam != null) {
             return false;
         }
         BLangType type1 = node.requiredParams.get(0).getTypeNode();
@@ -384,6 +946,14 @@ public class AWSLambdaPlugin extends AbstractCompilerPlugin {
             return false;
         }
         BLangType retType = node.returnTypeNode;
+        if (isStreamingFunction(node)) {
+            // the response of a streaming handler is written to the stream, so it can only return an error
+            return isLambdaType(node.requiredParams.get(2).type, LAMBDA_RESPONSE_STREAM_TYPE_NAME) &&
+                    isErrorOrNil(retType.type);
+        }
+        if (this.getRawPayloadType(retType.type) != null || this.isProxyResponse(retType.type)) {
+            return true;
+        }
         if (retType instanceof BLangUnionTypeNode) {
             BLangUnionTypeNode unionType = (BLangUnionTypeNode) retType;
             Set<Integer> typeTags = new HashSet<>();
@@ -401,43 +971,294 @@ public class AWSLambdaPlugin extends AbstractCompilerPlugin {
     }
 
     private boolean hasLambaAnnotation(AnnotationAttachmentNode attachmentNode) {
+        return this.hasLambdaAnnotation(attachmentNode, FUNCTION_ANNOTATION_NAME);
+    }
+
+    private boolean hasLambdaAnnotation(AnnotationAttachmentNode attachmentNode, String annotationName) {
         BAnnotationSymbol symbol = ((BLangAnnotationAttachment) attachmentNode).annotationSymbol;
         return AWS_LAMBDA_PACKAGE_ORG.equals(symbol.pkgID.orgName.value) &&
-                AWS_LAMBDA_PACKAGE_NAME.equals(symbol.pkgID.name.value) && "Function".equals(symbol.name.value);
+                AWS_LAMBDA_PACKAGE_NAME.equals(symbol.pkgID.name.value) && annotationName.equals(symbol.name.value);
     }
 
     @Override
     public void codeGenerated(PackageID packageID, Path binaryPath) {
-        if (AWSLambdaPlugin.generatedFuncs.isEmpty()) {
+        Map<String, String> handlers = AWSLambdaPlugin.generatedFuncs.remove(packageID);
+        if (handlers == null || handlers.isEmpty()) {
             // no lambda functions, nothing else to do
             return;
         }
-        OUT.println("\t@awslambda:Function: " + String.join(", ", AWSLambdaPlugin.generatedFuncs));
+        OUT.println("\t@awslambda:Function: " + String.join(", ", handlers.keySet()));
+        String balxName = getBalxName(binaryPath);
+        boolean functionArtifacts = this.isFunctionArtifacts();
         try {
-            this.generateZipFile(binaryPath);
-        } catch (IOException e) {
+            if (functionArtifacts) {
+                this.generateFunctionZipFiles(binaryPath, handlers);
+            } else {
+                this.generateZipFile(binaryPath, LAMBDA_OUTPUT_ZIP_FILENAME, null, handlers, OUT);
+            }
+        } catch (IOException | IllegalArgumentException e) {
             throw new BallerinaException("Error generating AWS lambda zip file: " + e.getMessage(), e);
         }
-        String balxName = binaryPath.getFileName().toString().split("\\.")[0];
+        String zipFileName = functionArtifacts ? getFunctionZipFileName("$FUNCTION_NAME") :
+                LAMBDA_OUTPUT_ZIP_FILENAME;
         OUT.println("\n\tRun the following command to deploy each Ballerina AWS Lambda function:");
         OUT.println("\taws lambda create-function --function-name $FUNCTION_NAME --zip-file fileb://"
-                + LAMBDA_OUTPUT_ZIP_FILENAME + " --handler " + balxName
+                + zipFileName + " --handler " + balxName
                 + ".$FUNCTION_NAME --runtime provided --role $LAMBDA_ROLE_ARN --layers "
                 + "arn:aws:lambda:$REGION_ID:134633749276:layer:ballerina-jre11:1 --memory-size 512 --timeout 10");
         OUT.println("\n\tRun the following command to re-deploy an updated Ballerina AWS Lambda function:");
         OUT.println("\taws lambda update-function-code --function-name $FUNCTION_NAME --zip-file fileb://"
-                + LAMBDA_OUTPUT_ZIP_FILENAME);
+                + zipFileName);
+    }
+
+    private boolean isFunctionArtifacts() {
+        String artifacts = System.getenv(ARTIFACTS_ENV);
+        if (artifacts == null || artifacts.isEmpty() || "module".equalsIgnoreCase(artifacts)) {
+            return false;
+        }
+        if (FUNCTION_ARTIFACTS.equalsIgnoreCase(artifacts)) {
+            return true;
+        }
+        throw new BallerinaException("Invalid " + ARTIFACTS_ENV + " value '" + artifacts +
+                "', it should be 'module' or '" + FUNCTION_ARTIFACTS + "'");
     }
 
-    private void generateZipFile(Path binaryPath) throws IOException {
-        Path path = binaryPath.toAbsolutePath().getParent().resolve(LAMBDA_OUTPUT_ZIP_FILENAME);
+    private static int getPackagingThreads() {
+        String threads = System.getenv(PACKAGING_THREADS_ENV);
+        if (threads == null || threads.isEmpty()) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        try {
+            int count = Integer.parseInt(threads);
+            if (count > 0) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("invalid " + PACKAGING_THREADS_ENV + " value '" + threads +
+                "', it should be a positive integer");
+    }
+
+    /**
+     * Packages a zip file for each handler. The zip files are packaged concurrently, and the output of each one
+     * is printed in the order of the handlers once it is done.
+     *
+     * @param binaryPath executable jar
+     * @param handlers   handlers of the module and their JVM profiles
+     * @throws IOException if a zip file cannot be written
+     */
+    private void generateFunctionZipFiles(Path binaryPath, Map<String, String> handlers) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(handlers.size(), getPackagingThreads()));
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (String handler : handlers.keySet()) {
+                results.add(executor.submit(() -> {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    try (PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8)) {
+                        this.generateZipFile(binaryPath, getFunctionZipFileName(handler), handler, handlers, out);
+                    }
+                    return buffer.toString(StandardCharsets.UTF_8);
+                }));
+            }
+            for (Future<String> result : results) {
+                OUT.print(getPackagingResult(result));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String getPackagingResult(Future<String> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("packaging interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static String getBalxName(Path binaryPath) {
+        return binaryPath.getFileName().toString().split("\\.")[0];
+    }
+
+    private static String getFunctionZipFileName(String func) {
+        return LAMBDA_FUNCTION_ZIP_FILENAME_PREFIX + func + ".zip";
+    }
+
+    /**
+     * Packages the executable jar into a Lambda zip file.
+     *
+     * @param binaryPath  executable jar
+     * @param zipFileName name of the zip file, which is written next to the jar
+     * @param handler     the only handler of the zip file, or null to package all handlers
+     * @param handlers    all handlers of the module and their JVM profiles
+     * @param out         stream to print the packaging output to
+     * @throws IOException if the zip file cannot be written
+     */
+    private void generateZipFile(Path binaryPath, String zipFileName, String handler, Map<String, String> handlers,
+                                 PrintStream out) throws IOException {
+        Path path = binaryPath.toAbsolutePath().getParent().resolve(zipFileName);
+        Path cdsLayerPath = getCDSLayerZipPath(path);
+        // the training run executes the program, including its module level initialisers, so it is opt-in
+        boolean cdsEnabled = "true".equalsIgnoreCase(System.getenv(CDS_ENABLED_ENV));
+        int compression = ZipUtils.parseCompression(System.getenv(ZIP_COMPRESSION_ENV));
+        SortedMap<String, String> options = this.getPackagingOptions();
+        options.put(HANDLER_ENV, String.valueOf(handler));
+        byte[] jvmProfiles = getJvmProfiles(handler, handlers);
+        options.put(JVM_PROFILE_FIELD, new String(jvmProfiles, StandardCharsets.UTF_8));
+        String inputsHash = PackagingManifest.hashInputs(binaryPath, options);
+        // the AppCDS archive is not covered by the manifest, so it is regenerated along with the zip if missing
+        if (PackagingManifest.isUpToDate(path, inputsHash) && (!cdsEnabled || Files.exists(cdsLayerPath))) {
+            out.println("\t" + zipFileName + " is up to date, CodeSha256: " +
+                    PackagingManifest.read(PackagingManifest.getManifestPath(path)).getCodeSha256());
+            return;
+        }
         Files.deleteIfExists(path);
-        Map<String, String> env = new HashMap<>();
-        env.put("create", "true");
-        URI uri = URI.create("jar:file:" + path.toUri().getPath());
-        try (FileSystem zipfs = FileSystems.newFileSystem(uri, env)) {
-            Path pathInZipfile = zipfs.getPath("/" + binaryPath.getFileName());
-            Files.copy(binaryPath, pathInZipfile, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(PackagingManifest.getManifestPath(path));
+        Files.deleteIfExists(cdsLayerPath);
+        Path workDir = Files.createTempDirectory("ballerina-aws-lambda-");
+        try {
+            Path jar = workDir.resolve(binaryPath.getFileName().toString());
+            ZipUtils.normalizeJar(binaryPath, jar);
+            // the training run of a single handler artifact only registers that handler
+            Map<String, String> trainingEnv = handler == null ? Collections.emptyMap() :
+                    Collections.singletonMap(HANDLER_ENV, getBalxName(binaryPath) + "." + handler);
+            CDSArchiveGenerator cdsGenerator = new CDSArchiveGenerator();
+            Path classList = null;
+            if (cdsEnabled) {
+                classList = this.trainCDSClassList(cdsGenerator, jar, trainingEnv, out);
+            }
+            // single handler artifacts are always shrunk, to drop the code of the other handlers
+            if (handler != null || "true".equalsIgnoreCase(System.getenv(SHRINK_ENABLED_ENV))) {
+                this.shrinkJar(jar, classList, handler, handlers, out);
+            }
+            // the CDS archive is only accepted by the JVM if the extracted jar has the same modification time
+            // as the one it was dumped with, which is the fixed time of the zip entries
+            Files.setLastModifiedTime(jar, ZipUtils.FIXED_ENTRY_TIME);
+            Path archive = null;
+            if (classList != null) {
+                archive = this.dumpCDSArchive(cdsGenerator, jar, classList, trainingEnv, out);
+            }
+            // the JVM only checks the modification time and the size of the jar against the archive, and the time
+            // is fixed, so the bootstrap looks up the archive by the SHA-256 of the jar instead
+            String jarSha256 = cdsEnabled ? ZipUtils.sha256Hex(jar) : null;
+            try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(path))) {
+                ZipUtils.writeEntry(zos, jar.getFileName().toString(), jar, compression);
+                if (jvmProfiles.length > 0) {
+                    ZipUtils.writeEntry(zos, getBalxName(binaryPath) + JVM_PROFILES_EXT, jvmProfiles);
+                }
+                if (jarSha256 != null) {
+                    ZipUtils.writeEntry(zos, getBalxName(binaryPath) + JAR_SHA256_EXT,
+                            (jarSha256 + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            // the archive differs between JVM runs, so it is packaged as a layer outside of the reproducible zip
+            if (archive != null) {
+                try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(cdsLayerPath))) {
+                    ZipUtils.writeEntry(zos, getBalxName(binaryPath) + "-" + jarSha256 +
+                            CDSArchiveGenerator.ARCHIVE_EXT, archive, Deflater.DEFAULT_COMPRESSION);
+                }
+                out.println("\tAppCDS layer: " + cdsLayerPath.getFileName());
+            }
+        } finally {
+            this.deleteDirectory(workDir);
+        }
+        PackagingManifest manifest = new PackagingManifest(inputsHash, ZipUtils.sha256Base64(path));
+        manifest.write(PackagingManifest.getManifestPath(path));
+        out.println("\t" + zipFileName + " CodeSha256: " + manifest.getCodeSha256());
+    }
+
+    /**
+     * Returns the path of the zip file of the AppCDS archive layer that belongs to a function zip file.
+     */
+    private static Path getCDSLayerZipPath(Path zipFile) {
+        String name = zipFile.getFileName().toString();
+        return zipFile.resolveSibling(name.substring(0, name.length() - ".zip".length()) + CDS_LAYER_ZIP_SUFFIX);
+    }
+
+    /**
+     * Returns the JVM profiles file read by the bootstrap, with a {@code handler=profile} line for each packaged
+     * handler whose annotation selects a JVM profile.
+     */
+    private static byte[] getJvmProfiles(String handler, Map<String, String> handlers) {
+        StringBuilder profiles = new StringBuilder();
+        for (Map.Entry<String, String> entry : handlers.entrySet()) {
+            if (entry.getValue() != null && (handler == null || handler.equals(entry.getKey()))) {
+                profiles.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+            }
+        }
+        return profiles.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private SortedMap<String, String> getPackagingOptions() {
+        SortedMap<String, String> options = new TreeMap<>();
+        for (String env : PACKAGING_OPTION_ENVS) {
+            options.put(env, String.valueOf(System.getenv(env)));
+        }
+        // the AppCDS archive depends on the JVM used for the training run
+        options.put("java.home", System.getProperty("java.home"));
+        return options;
+    }
+
+    private Path trainCDSClassList(CDSArchiveGenerator cdsGenerator, Path jar, Map<String, String> env,
+                                   PrintStream out) {
+        try {
+            return cdsGenerator.train(jar, env);
+        } catch (IOException e) {
+            // the archive is an optimization, the function still works without it
+            out.println("\tWarning: skipping AppCDS archive generation: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Path dumpCDSArchive(CDSArchiveGenerator cdsGenerator, Path jar, Path classList,
+                                Map<String, String> env, PrintStream out) {
+        try {
+            Path archive = cdsGenerator.dump(jar, classList, env);
+            out.println("\tAppCDS archive: " + archive.getFileName());
+            return archive;
+        } catch (IOException e) {
+            out.println("\tWarning: skipping AppCDS archive generation: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void shrinkJar(Path jar, Path classList, String handler, Map<String, String> handlers,
+                           PrintStream out) throws IOException {
+        List<String> keepPrefixes = new ArrayList<>(SHRINK_KEEP_PREFIXES);
+        String keep = System.getenv(SHRINK_KEEP_ENV);
+        if (keep != null) {
+            for (String pkg : keep.split(",")) {
+                if (!pkg.trim().isEmpty()) {
+                    keepPrefixes.add(pkg.trim().replace('.', '/') + "/");
+                }
+            }
+        }
+        // classes loaded by the training run are retained, and are placed first in the jar in load order
+        List<String> loadOrder = classList == null ? Collections.emptyList() :
+                CDSArchiveGenerator.readClassList(classList);
+        Path shrunkJar = jar.resolveSibling(jar.getFileName() + ".shrunk");
+        Set<String> otherHandlers = new LinkedHashSet<>(handlers.keySet());
+        otherHandlers.remove(handler);
+        JarShrinker.Stats stats = new JarShrinker(keepPrefixes, handler, otherHandlers)
+                .shrink(jar, shrunkJar, loadOrder);
+        Files.move(shrunkJar, jar, StandardCopyOption.REPLACE_EXISTING);
+        out.println("\tShrunk executable jar: " + stats);
+    }
+
+    private void deleteDirectory(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
         }
     }
 
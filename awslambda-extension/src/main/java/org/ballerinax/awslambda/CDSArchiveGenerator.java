@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates an application class data sharing (AppCDS) archive for a Lambda executable jar.
+ * <p>
+ * A training run of the jar records the classes loaded by the generated main function and the
+ * handler dispatch, and the recorded class list is then dumped into an archive which the bootstrap passes
+ * to the JVM using -XX:SharedArchiveFile. The JVM validates the archive against the jar path, size and
+ * modification time, so the jar is always referenced relative to the working directory, and the caller must
+ * package the jar with the same modification time it had when the archive was dumped.
+ */
+public class CDSArchiveGenerator {
+
+    public static final String TRAINING_ENV = "BALLERINA_AWSLAMBDA_TRAINING";
+
+    public static final String JAVA_HOME_ENV = "BALLERINA_AWSLAMBDA_JAVA_HOME";
+
+    public static final String CLASS_LIST_EXT = ".classlist";
+
+    public static final String ARCHIVE_EXT = ".jsa";
+
+    private static final long PROCESS_TIMEOUT_SECONDS = 120;
+
+    private final Path javaCommand;
+
+    public CDSArchiveGenerator() {
+        String javaHome = System.getenv(JAVA_HOME_ENV);
+        if (javaHome == null || javaHome.isEmpty()) {
+            javaHome = System.getProperty("java.home");
+        }
+        this.javaCommand = Paths.get(javaHome, "bin", File.separatorChar == '\\' ? "java.exe" : "java");
+    }
+
+    /**
+     * Runs the training pass and dumps the archive next to the given jar.
+     *
+     * @param jar executable jar, the archive is written to the same directory
+     * @param env additional environment variables for the training run
+     * @return the generated archive
+     * @throws IOException if the training run or the archive dump fails
+     */
+    public Path generate(Path jar, Map<String, String> env) throws IOException {
+        return this.dump(jar, this.train(jar, env), env);
+    }
+
+    /**
+     * Runs the training pass of the given jar and records the loaded classes.
+     *
+     * @param jar executable jar, the class list is written to the same directory
+     * @param env additional environment variables for the training run
+     * @return the class list of the training run
+     * @throws IOException if the training run fails
+     */
+    public Path train(Path jar, Map<String, String> env) throws IOException {
+        Path workDir = jar.toAbsolutePath().getParent();
+        String jarName = jar.getFileName().toString();
+        Path classList = workDir.resolve(getBaseName(jar) + CLASS_LIST_EXT);
+        Files.deleteIfExists(classList);
+
+        List<String> trainCmd = new ArrayList<>();
+        trainCmd.add(this.javaCommand.toString());
+        trainCmd.add("-Xshare:off");
+        trainCmd.add("-XX:DumpLoadedClassList=" + classList.getFileName());
+        trainCmd.add("-jar");
+        trainCmd.add(jarName);
+        this.execute(trainCmd, workDir, env, "training run");
+        if (!Files.exists(classList)) {
+            throw new IOException("training run did not produce a class list");
+        }
+        return classList;
+    }
+
+    /**
+     * Dumps the archive of the classes in the class list next to the given jar. The jar must not be modified
+     * after the archive is dumped.
+     *
+     * @param jar       executable jar, the archive is written to the same directory
+     * @param classList class list of a training run
+     * @param env       additional environment variables for the archive dump
+     * @return the generated archive
+     * @throws IOException if the archive dump fails
+     */
+    public Path dump(Path jar, Path classList, Map<String, String> env) throws IOException {
+        Path workDir = jar.toAbsolutePath().getParent();
+        Path archive = workDir.resolve(getBaseName(jar) + ARCHIVE_EXT);
+        Files.deleteIfExists(archive);
+
+        List<String> dumpCmd = new ArrayList<>();
+        dumpCmd.add(this.javaCommand.toString());
+        dumpCmd.add("-Xshare:dump");
+        dumpCmd.add("-XX:SharedClassListFile=" + workDir.relativize(classList.toAbsolutePath()));
+        dumpCmd.add("-XX:SharedArchiveFile=" + archive.getFileName());
+        dumpCmd.add("-cp");
+        dumpCmd.add(jar.getFileName().toString());
+        this.execute(dumpCmd, workDir, env, "archive dump");
+        if (!Files.exists(archive)) {
+            throw new IOException("archive dump did not produce " + archive.getFileName());
+        }
+        return archive;
+    }
+
+    /**
+     * Reads the class names of a class list in the order they were loaded.
+     *
+     * @param classList class list of a training run
+     * @return class names in internal form
+     * @throws IOException if the class list cannot be read
+     */
+    public static List<String> readClassList(Path classList) throws IOException {
+        List<String> classes = new ArrayList<>();
+        for (String line : Files.readAllLines(classList, StandardCharsets.UTF_8)) {
+            // newer JVMs add comments, lambda proxy entries and class ids to the list
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("@")) {
+                continue;
+            }
+            classes.add(line.split(" ")[0]);
+        }
+        return classes;
+    }
+
+    private static String getBaseName(Path jar) {
+        String jarName = jar.getFileName().toString();
+        return jarName.substring(0, jarName.lastIndexOf('.'));
+    }
+
+    private void execute(List<String> command, Path workDir, Map<String, String> env, String step)
+            throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.directory(workDir.toFile());
+        pb.environment().put(TRAINING_ENV, "true");
+        pb.environment().putAll(env);
+        pb.redirectErrorStream(true);
+        Path log = workDir.resolve("cds-" + step.replace(' ', '-') + ".log");
+        pb.redirectOutput(log.toFile());
+        Process process = pb.start();
+        try {
+            if (!process.waitFor(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException(step + " timed out");
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException(step + " interrupted", e);
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException(step + " failed with exit code " + process.exitValue() + ": " +
+                    new String(Files.readAllBytes(log), StandardCharsets.UTF_8).trim());
+        }
+    }
+
+}
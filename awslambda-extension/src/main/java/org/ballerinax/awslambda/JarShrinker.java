@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Removes the classes and resources of an executable jar which are not reachable from the Lambda entry points.
+ * <p>
+ * Reachability is computed at class level from the constant pools of the classes. Every UTF-8 constant is
+ * treated as a potential reference, either as an internal class name, a class name in binary form as used with
+ * reflection, or a type descriptor, which keeps classes loaded by name and conservatively over approximates
+ * the reachable set. Classes under the kept package prefixes, service providers and the classes in the
+ * training class list are always retained.
+ * <p>
+ * When shrinking for a single handler, only the proxy of that handler is a root, and the references from the
+ * generated entry class, which holds the main function and all the handler proxies, to module classes that
+ * declare other handlers only are not followed. Those references are the dispatch branches of the other
+ * handlers, which are not executed when the selected handler is deployed.
+ */
+public class JarShrinker {
+
+    private static final String CLASS_EXT = ".class";
+
+    private static final String META_INF = "META-INF/";
+
+    private static final String SERVICES_DIR = META_INF + "services/";
+
+    private static final String PROXY_FUNC_PREFIX = "__func_proxy__";
+
+    private static final int CLASS_MAGIC = 0xCAFEBABE;
+
+    private final List<String> keepPrefixes;
+
+    private final String handler;
+
+    private final Set<String> otherHandlers;
+
+    public JarShrinker(List<String> keepPrefixes) {
+        this(keepPrefixes, null, Collections.emptySet());
+    }
+
+    /**
+     * Creates a shrinker for the artifact of a single handler.
+     *
+     * @param keepPrefixes  package prefixes in internal form which are always retained
+     * @param handler       name of the handler function, null to retain all handlers
+     * @param otherHandlers names of the other handler functions of the module
+     */
+    public JarShrinker(List<String> keepPrefixes, String handler, Set<String> otherHandlers) {
+        this.keepPrefixes = keepPrefixes;
+        this.handler = handler;
+        this.otherHandlers = otherHandlers;
+    }
+
+    /**
+     * Writes the reachable entries of the source jar to the target jar. Classes are written in the given load
+     * order first, followed by the other reachable classes in the order they were discovered.
+     *
+     * @param source    executable jar
+     * @param target    shrunk jar to write
+     * @param loadOrder class names in internal form in the order they are loaded, may be empty
+     * @return shrinking statistics
+     * @throws IOException if the jar cannot be read or written
+     */
+    public Stats shrink(Path source, Path target, List<String> loadOrder) throws IOException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        Map<String, byte[]> resources = new LinkedHashMap<>();
+        String mainClass = null;
+        try (ZipFile jar = new ZipFile(source.toFile())) {
+            for (ZipEntry entry : Collections.list(jar.entries())) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                byte[] content = readAll(jar.getInputStream(entry));
+                String name = entry.getName();
+                if (name.endsWith(CLASS_EXT) && !name.startsWith(META_INF)) {
+                    classes.put(name.substring(0, name.length() - CLASS_EXT.length()), content);
+                } else {
+                    resources.put(name, content);
+                }
+                if (JarFile.MANIFEST_NAME.equals(name)) {
+                    Manifest manifest = new Manifest(new ByteArrayInputStream(content));
+                    mainClass = manifest.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+                }
+            }
+        }
+
+        Set<String> retained = new LinkedHashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        if (mainClass != null) {
+            this.enqueue(mainClass.replace('.', '/'), classes, retained, pending);
+        }
+        for (String className : loadOrder) {
+            this.enqueue(className, classes, retained, pending);
+        }
+        for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+            if (resource.getKey().startsWith(SERVICES_DIR)) {
+                this.enqueue(resource.getKey().substring(SERVICES_DIR.length()).replace('.', '/'), classes,
+                        retained, pending);
+                for (String line : new String(resource.getValue(), StandardCharsets.UTF_8).split("\n")) {
+                    String provider = line.replaceAll("#.*", "").trim();
+                    this.enqueue(provider.replace('.', '/'), classes, retained, pending);
+                }
+            }
+        }
+        Map<String, ClassInfo> classInfos = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> clazz : classes.entrySet()) {
+            classInfos.put(clazz.getKey(), readClassInfo(clazz.getValue()));
+        }
+        String moduleDir = mainClass == null ? "" : packageDir(mainClass.replace('.', '/'));
+        Set<String> otherHandlerClasses = new LinkedHashSet<>();
+        for (Map.Entry<String, ClassInfo> clazz : classInfos.entrySet()) {
+            ClassInfo info = clazz.getValue();
+            if (this.isKept(clazz.getKey()) || this.hasProxyFunction(info)) {
+                this.enqueue(clazz.getKey(), classes, retained, pending);
+            }
+            if (this.handler != null && packageDir(clazz.getKey()).equals(moduleDir) &&
+                    !info.methods.contains(this.handler) &&
+                    !Collections.disjoint(info.methods, this.otherHandlers)) {
+                otherHandlerClasses.add(clazz.getKey());
+            }
+        }
+        while (!pending.isEmpty()) {
+            ClassInfo info = classInfos.get(pending.poll());
+            boolean entryClass = this.handler != null && isEntryClass(info);
+            for (String constant : info.utf8Constants) {
+                for (String reference : referencedClassNames(constant)) {
+                    if (entryClass && otherHandlerClasses.contains(reference)) {
+                        continue;
+                    }
+                    this.enqueue(reference, classes, retained, pending);
+                }
+            }
+        }
+
+        Set<String> retainedDirs = new LinkedHashSet<>();
+        for (String className : retained) {
+            retainedDirs.add(packageDir(className));
+        }
+        Stats stats = new Stats(classes.size(), retained.size(), Files.size(source));
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(target))) {
+            // the manifest has to be the first entry for JarInputStream to find it
+            byte[] manifest = resources.remove(JarFile.MANIFEST_NAME);
+            if (manifest != null) {
+                ZipUtils.writeEntry(zos, JarFile.MANIFEST_NAME, manifest);
+            }
+            Set<String> ordered = new LinkedHashSet<>();
+            for (String className : loadOrder) {
+                if (retained.contains(className)) {
+                    ordered.add(className);
+                }
+            }
+            ordered.addAll(retained);
+            for (String className : ordered) {
+                ZipUtils.writeEntry(zos, className + CLASS_EXT, classes.get(className));
+            }
+            for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+                String name = resource.getKey();
+                String dir = packageDir(name);
+                if (name.startsWith(META_INF) || dir.isEmpty() || retainedDirs.contains(dir)) {
+                    ZipUtils.writeEntry(zos, name, resource.getValue());
+                }
+            }
+        }
+        stats.shrunkSize = Files.size(target);
+        return stats;
+    }
+
+    private void enqueue(String className, Map<String, byte[]> classes, Set<String> retained,
+                         Deque<String> pending) {
+        if (classes.containsKey(className) && retained.add(className)) {
+            pending.add(className);
+        }
+    }
+
+    private boolean isKept(String className) {
+        for (String prefix : this.keepPrefixes) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasProxyFunction(ClassInfo info) {
+        for (String method : info.methods) {
+            if (this.handler == null ? method.startsWith(PROXY_FUNC_PREFIX) :
+                    method.equals(PROXY_FUNC_PREFIX + this.handler)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEntryClass(ClassInfo info) {
+        for (String method : info.methods) {
+            if (method.startsWith(PROXY_FUNC_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String packageDir(String name) {
+        return name.substring(0, name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Returns the class names a constant may refer to, which are only looked up in the jar afterwards.
+     *
+     * @param constant UTF-8 constant of a class file
+     * @return candidate class names in internal form
+     */
+    static List<String> referencedClassNames(String constant) {
+        List<String> names = new ArrayList<>();
+        // internal names of class constants, and binary names of classes loaded by name
+        names.add(constant.replace('.', '/'));
+        // object types in field, method and generic signature descriptors, including array types
+        int start = constant.indexOf('L');
+        while (start >= 0) {
+            int end = indexOfAny(constant, start + 1);
+            if (end < 0) {
+                break;
+            }
+            if (constant.charAt(end) == ';' || constant.charAt(end) == '<') {
+                names.add(constant.substring(start + 1, end));
+            }
+            start = constant.indexOf('L', start + 1);
+        }
+        return names;
+    }
+
+    private static int indexOfAny(String value, int from) {
+        for (int i = from; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ';' || c == '<' || c == '(' || c == ')' || c == '[' || c == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the UTF-8 entries of the constant pool and the declared method names of a class file.
+     *
+     * @param classFile class file content
+     * @return class file information
+     * @throws IOException if the class file is malformed
+     */
+    static ClassInfo readClassInfo(byte[] classFile) throws IOException {
+        ClassInfo info = new ClassInfo();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+        if (in.readInt() != CLASS_MAGIC) {
+            return info;
+        }
+        // minor and major version
+        in.readInt();
+        int count = in.readUnsignedShort();
+        Map<Integer, String> utf8ByIndex = new HashMap<>();
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    String value = in.readUTF();
+                    utf8ByIndex.put(i, value);
+                    info.utf8Constants.add(value);
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    in.skipBytes(2);
+                    break;
+                case 15: // MethodHandle
+                    in.skipBytes(3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    in.skipBytes(4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    in.skipBytes(8);
+                    // 8 byte constants take two entries in the pool
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag: " + tag);
+            }
+        }
+        // access flags, this class and super class
+        in.skipBytes(6);
+        in.skipBytes(2 * in.readUnsignedShort());
+        skipMembers(in, null, utf8ByIndex);
+        skipMembers(in, info.methods, utf8ByIndex);
+        return info;
+    }
+
+    private static void skipMembers(DataInputStream in, Set<String> names, Map<Integer, String> utf8ByIndex)
+            throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            // access flags
+            in.skipBytes(2);
+            String name = utf8ByIndex.get(in.readUnsignedShort());
+            if (names != null && name != null) {
+                names.add(name);
+            }
+            // descriptor
+            in.skipBytes(2);
+            int attributes = in.readUnsignedShort();
+            for (int j = 0; j < attributes; j++) {
+                in.skipBytes(2);
+                in.skipBytes(in.readInt());
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            return stream.readAllBytes();
+        }
+    }
+
+    /**
+     * Constant pool strings and method names of a class.
+     */
+    static class ClassInfo {
+        private final List<String> utf8Constants = new ArrayList<>();
+        private final Set<String> methods = new HashSet<>();
+    }
+
+    /**
+     * Statistics of a shrinking run.
+     */
+    public static class Stats {
+        private final int classCount;
+        private final int retainedClassCount;
+        private final long originalSize;
+        private long shrunkSize;
+
+        Stats(int classCount, int retainedClassCount, long originalSize) {
+            this.classCount = classCount;
+            this.retainedClassCount = retainedClassCount;
+            this.originalSize = originalSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d of %d classes, %.1fMB -> %.1fMB", this.retainedClassCount, this.classCount,
+                    this.originalSize / (1024.0 * 1024.0), this.shrunkSize / (1024.0 * 1024.0));
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.ballerinax.awslambda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Builds a minimal Java runtime image for Lambda executable jars.
+ * <p>
+ * The Java modules used by the jars are found with jdeps, and jlink links only those modules into a runtime
+ * image with compressed resources and without debug information, header files and man pages. The image can
+ * be deployed as a layer in place of the full JDK, which the bootstrap of the Ballerina layer prefers when
+ * it is present.
+ */
+public class JreImageBuilder {
+
+    public static final String MODULES_PROPERTY = "jre.modules";
+
+    public static final String JMODS_PROPERTY = "jre.jmods";
+
+    // modules which are only loaded as service providers, so jdeps cannot find them in the bytecode, the
+    // elliptic curve provider is needed for TLS connections to the AWS service endpoints
+    private static final List<String> PROVIDER_MODULES = Arrays.asList("jdk.crypto.ec");
+
+    private static final long PROCESS_TIMEOUT_SECONDS = 300;
+
+    private final Path jdkHome;
+
+    private final Path jmods;
+
+    /**
+     * Creates a builder with the tools of the given JDK.
+     *
+     * @param jdkHome JDK with the jdeps and jlink tools
+     * @param jmods   directory of the modules to link, which can be the jmods of a JDK for another platform of
+     *                the same version, or null for the jmods of the given JDK
+     */
+    public JreImageBuilder(Path jdkHome, Path jmods) {
+        this.jdkHome = jdkHome;
+        this.jmods = jmods == null ? jdkHome.resolve("jmods") : jmods;
+    }
+
+    /**
+     * Finds the Java modules used by the given jars.
+     *
+     * @param jars executable jars
+     * @return names of the modules, including the service provider modules
+     * @throws IOException if jdeps fails
+     */
+    public Set<String> findModules(List<Path> jars) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(this.getTool("jdeps").toString());
+        command.add("--ignore-missing-deps");
+        command.add("--multi-release");
+        command.add(String.valueOf(Runtime.version().feature()));
+        command.add("--print-module-deps");
+        for (Path jar : jars) {
+            command.add(jar.toAbsolutePath().toString());
+        }
+        String output;
+        try {
+            output = this.execute(command, "jdeps");
+        } catch (IOException e) {
+            if (!e.getMessage().contains("--ignore-missing-deps")) {
+                throw e;
+            }
+            // older JDK 11 updates report missing dependencies as warnings and do not have the option
+            command.remove("--ignore-missing-deps");
+            output = this.execute(command, "jdeps");
+        }
+        Set<String> modules = new TreeSet<>(PROVIDER_MODULES);
+        String[] lines = output.trim().split("\\R");
+        for (String module : lines[lines.length - 1].split(",")) {
+            if (!module.trim().isEmpty()) {
+                modules.add(module.trim());
+            }
+        }
+        return modules;
+    }
+
+    /**
+     * Links a runtime image with the modules used by the given jars.
+     *
+     * @param jars         executable jars
+     * @param extraModules additional modules to link, such as modules which are loaded reflectively
+     * @param output       directory of the runtime image, which is replaced if it exists
+     * @return the linked modules
+     * @throws IOException if jdeps or jlink fails
+     */
+    public Set<String> build(List<Path> jars, Collection<String> extraModules, Path output) throws IOException {
+        if (!Files.isDirectory(this.jmods)) {
+            throw new IOException("jmods directory not found: " + this.jmods);
+        }
+        Set<String> modules = this.findModules(jars);
+        modules.addAll(extraModules);
+        deleteDirectory(output);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        List<String> command = new ArrayList<>();
+        command.add(this.getTool("jlink").toString());
+        command.add("--module-path");
+        command.add(this.jmods.toString());
+        command.add("--add-modules");
+        command.add(String.join(",", modules));
+        command.add("--output");
+        command.add(output.toAbsolutePath().toString());
+        command.add("--compress=2");
+        command.add("--strip-debug");
+        command.add("--no-header-files");
+        command.add("--no-man-pages");
+        this.execute(command, "jlink");
+        return modules;
+    }
+
+    private Path getTool(String name) {
+        return this.jdkHome.resolve("bin").resolve(File.separatorChar == '\\' ? name + ".exe" : name);
+    }
+
+    private String execute(List<String> command, String step) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        Path log = Files.createTempFile("ballerina-aws-lambda-" + step + "-", ".log");
+        try {
+            pb.redirectOutput(log.toFile());
+            Process process = pb.start();
+            try {
+                if (!process.waitFor(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                    throw new IOException(step + " timed out");
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+                throw new IOException(step + " interrupted", e);
+            }
+            String output = new String(Files.readAllBytes(log), StandardCharsets.UTF_8);
+            if (process.exitValue() != 0) {
+                throw new IOException(step + " failed with exit code " + process.exitValue() + ": " + output.trim());
+            }
+            return output;
+        } finally {
+            Files.deleteIfExists(log);
+        }
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Builds a runtime image with the JDK running this method.
+     * <p>
+     * Usage: {@code JreImageBuilder <output directory> <jar>...}. The {@value #MODULES_PROPERTY} system property
+     * adds a comma separated list of modules, and the {@value #JMODS_PROPERTY} system property selects the
+     * directory of the modules to link.
+     *
+     * @param args the output directory and the executable jars
+     * @throws IOException if the runtime image cannot be built
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("usage: JreImageBuilder <output directory> <jar>...");
+        }
+        List<Path> jars = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            jars.add(Paths.get(args[i]));
+        }
+        List<String> extraModules = new ArrayList<>();
+        for (String module : System.getProperty(MODULES_PROPERTY, "").split(",")) {
+            if (!module.trim().isEmpty()) {
+                extraModules.add(module.trim());
+            }
+        }
+        String jmods = System.getProperty(JMODS_PROPERTY, "");
+        JreImageBuilder builder = new JreImageBuilder(Paths.get(System.getProperty("java.home")),
+                jmods.isEmpty() ? null : Paths.get(jmods));
+        Set<String> modules = builder.build(jars, extraModules, Paths.get(args[0]));
+        System.out.println("Linked runtime image " + args[0] + " with modules: " + String.join(", ", modules));
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Content hash manifest of a packaged Lambda zip file.
+ * <p>
+ * The manifest records the hash of the packaging inputs, which are the contents of the executable jar and the
+ * packaging options, along with the CodeSha256 of the zip as reported by AWS Lambda. A zip whose manifest
+ * matches the current inputs does not need to be packaged or deployed again.
+ */
+public class PackagingManifest {
+
+    public static final String MANIFEST_EXT = ".sha256";
+
+    private static final String INPUTS_HASH_KEY = "inputsHash";
+
+    private static final String CODE_SHA256_KEY = "codeSha256";
+
+    // bump when the zip layout changes, so zips packaged by older versions are not reused
+    private static final String FORMAT_VERSION = "1";
+
+    private final String inputsHash;
+
+    private final String codeSha256;
+
+    public PackagingManifest(String inputsHash, String codeSha256) {
+        this.inputsHash = inputsHash;
+        this.codeSha256 = codeSha256;
+    }
+
+    public String getInputsHash() {
+        return inputsHash;
+    }
+
+    public String getCodeSha256() {
+        return codeSha256;
+    }
+
+    /**
+     * Hashes the packaging inputs.
+     *
+     * @param jar     executable jar
+     * @param options packaging options which affect the zip content
+     * @return hex encoded SHA-256 hash of the inputs
+     * @throws IOException if the jar cannot be read
+     */
+    public static String hashInputs(Path jar, SortedMap<String, String> options) throws IOException {
+        MessageDigest digest = ZipUtils.newSha256Digest();
+        digest.update(FORMAT_VERSION.getBytes(StandardCharsets.UTF_8));
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            digest.update((option.getKey() + "=" + option.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        ZipUtils.updateContentDigest(digest, jar);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Checks whether a zip file was packaged from the given inputs and has not been modified since.
+     *
+     * @param zip        packaged zip file
+     * @param inputsHash hash of the current packaging inputs
+     * @return true if the zip can be reused
+     * @throws IOException if the zip or its manifest cannot be read
+     */
+    public static boolean isUpToDate(Path zip, String inputsHash) throws IOException {
+        Path manifestPath = getManifestPath(zip);
+        if (!Files.exists(zip) || !Files.exists(manifestPath)) {
+            return false;
+        }
+        PackagingManifest manifest = read(manifestPath);
+        return inputsHash.equals(manifest.inputsHash) && ZipUtils.sha256Base64(zip).equals(manifest.codeSha256);
+    }
+
+    public static Path getManifestPath(Path zip) {
+        return zip.resolveSibling(zip.getFileName() + MANIFEST_EXT);
+    }
+
+    public static PackagingManifest read(Path manifestPath) throws IOException {
+        String inputsHash = null;
+        String codeSha256 = null;
+        for (String line : Files.readAllLines(manifestPath, StandardCharsets.UTF_8)) {
+            int separator = line.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String key = line.substring(0, separator);
+            String value = line.substring(separator + 1);
+            if (INPUTS_HASH_KEY.equals(key)) {
+                inputsHash = value;
+            } else if (CODE_SHA256_KEY.equals(key)) {
+                codeSha256 = value;
+            }
+        }
+        return new PackagingManifest(inputsHash, codeSha256);
+    }
+
+    public void write(Path manifestPath) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(INPUTS_HASH_KEY + "=" + this.inputsHash);
+        lines.add(CODE_SHA256_KEY + "=" + this.codeSha256);
+        Files.write(manifestPath, lines, StandardCharsets.UTF_8);
+    }
+
+}
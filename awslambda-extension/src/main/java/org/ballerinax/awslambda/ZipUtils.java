@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.ballerinax.awslambda;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Utilities to write reproducible zip and jar files.
+ * <p>
+ * All entries are written with a fixed modification time in the order they are given, so packaging the same
+ * content twice produces byte for byte identical files.
+ */
+public class ZipUtils {
+
+    public static final FileTime FIXED_ENTRY_TIME = FileTime.from(Instant.parse("2020-01-01T00:00:00Z"));
+
+    public static final String STORED = "stored";
+
+    public static final int STORED_LEVEL = -2;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private ZipUtils() {
+    }
+
+    /**
+     * Parses a compression setting, which is either {@link #STORED} or a deflate level from 0 to 9.
+     *
+     * @param compression compression setting, null for the default deflate level
+     * @return the deflate level, or {@link #STORED_LEVEL} for stored entries
+     */
+    public static int parseCompression(String compression) {
+        if (compression == null || compression.isEmpty()) {
+            return Deflater.DEFAULT_COMPRESSION;
+        }
+        if (STORED.equalsIgnoreCase(compression)) {
+            return STORED_LEVEL;
+        }
+        try {
+            int level = Integer.parseInt(compression);
+            if (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION) {
+                return level;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("invalid zip compression '" + compression + "', it should be '" +
+                STORED + "' or a deflate level from 0 to 9");
+    }
+
+    /**
+     * Writes a file entry with the fixed modification time.
+     *
+     * @param zos         zip stream
+     * @param name        entry name
+     * @param file        entry content
+     * @param compression deflate level, or {@link #STORED_LEVEL} to store the entry uncompressed
+     * @throws IOException if the entry cannot be written
+     */
+    public static void writeEntry(ZipOutputStream zos, String name, Path file, int compression)
+            throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setLastModifiedTime(FIXED_ENTRY_TIME);
+        if (compression == STORED_LEVEL) {
+            // stored entries need the size and checksum before the content is written
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(Files.size(file));
+            entry.setCompressedSize(Files.size(file));
+            entry.setCrc(crc32(file));
+        } else {
+            entry.setMethod(ZipEntry.DEFLATED);
+            zos.setLevel(compression);
+        }
+        zos.putNextEntry(entry);
+        Files.copy(file, zos);
+        zos.closeEntry();
+    }
+
+    /**
+     * Writes a deflated entry with the fixed modification time.
+     *
+     * @param zos     zip stream
+     * @param name    entry name
+     * @param content entry content
+     * @throws IOException if the entry cannot be written
+     */
+    public static void writeEntry(ZipOutputStream zos, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setLastModifiedTime(FIXED_ENTRY_TIME);
+        zos.setLevel(Deflater.DEFAULT_COMPRESSION);
+        zos.putNextEntry(entry);
+        zos.write(content);
+        zos.closeEntry();
+    }
+
+    /**
+     * Rewrites a jar with the fixed modification time for all entries, keeping the entry order.
+     *
+     * @param source jar to read
+     * @param target jar to write
+     * @throws IOException if the jar cannot be read or written
+     */
+    public static void normalizeJar(Path source, Path target) throws IOException {
+        try (ZipFile jar = new ZipFile(source.toFile());
+             ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(target))) {
+            for (ZipEntry entry : Collections.list(jar.entries())) {
+                try (InputStream in = jar.getInputStream(entry)) {
+                    writeEntry(zos, entry.getName(), in.readAllBytes());
+                }
+            }
+        }
+    }
+
+    /**
+     * Hashes the entry names and contents of a jar in entry order, ignoring entry metadata such as timestamps.
+     *
+     * @param digest digest to update
+     * @param jar    jar to hash
+     * @throws IOException if the jar cannot be read
+     */
+    public static void updateContentDigest(MessageDigest digest, Path jar) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                try (InputStream in = zip.getInputStream(entry)) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the base64 encoded SHA-256 digest of a file, which is the format AWS Lambda uses for CodeSha256.
+     *
+     * @param file file to hash
+     * @return base64 encoded SHA-256 digest
+     * @throws IOException if the file cannot be read
+     */
+    public static String sha256Base64(Path file) throws IOException {
+        return Base64.getEncoder().encodeToString(sha256(file));
+    }
+
+    /**
+     * Returns the lower case hex encoded SHA-256 digest of a file, which is the format of {@code sha256sum}.
+     *
+     * @param file file to hash
+     * @return hex encoded SHA-256 digest
+     * @throws IOException if the file cannot be read
+     */
+    public static String sha256Hex(Path file) throws IOException {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : sha256(file)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256Digest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    public static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long crc32(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+}